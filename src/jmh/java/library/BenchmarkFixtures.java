@@ -0,0 +1,56 @@
+package library;
+
+/**
+ * Shared setup for the benchmarks: repository factories by name and a
+ * pre-filled service with a given number of reservations.
+ */
+final class BenchmarkFixtures {
+    static final int BOOKS = 1_000;
+
+    private BenchmarkFixtures() {
+    }
+
+    static IBookRepository bookRepository(String name) {
+        return switch (name) {
+            case "memory" -> new MemoryBookRepository();
+            case "concurrent" -> new ConcurrentBookRepository();
+            case "snapshot" -> new SnapshotBookRepository();
+            default -> throw new IllegalArgumentException("Unknown book repository: " + name);
+        };
+    }
+
+    static IReservationRepository reservationRepository(String name) {
+        return switch (name) {
+            case "memory" -> new MemoryReservationRepository();
+            case "indexed" -> new IndexedReservationRepository();
+            case "concurrent" -> new ConcurrentReservationRepository();
+            case "compact" -> new CompactReservationRepository();
+            case "snapshot" -> new SnapshotReservationRepository();
+            default -> throw new IllegalArgumentException("Unknown reservation repository: " + name);
+        };
+    }
+
+    /**
+     * Saves BOOKS books with plenty of copies and spreads reservations
+     * evenly over them. User "u<i>" holds reservation i.
+     */
+    static void fill(IBookRepository bookRepo, IReservationRepository reservationRepo, int reservations) {
+        int perBook = reservations / BOOKS + 1;
+        for (int b = 0; b < BOOKS; b++) {
+            bookRepo.save(new Book(bookId(b), "Book " + b, perBook + 1_000_000));
+        }
+        for (int i = 0; i < reservations; i++) {
+            Book book = bookRepo.findById(bookId(i % BOOKS));
+            book.tryAcquireCopy();
+            reservationRepo.save(new Reservation(userId(i), book.getId()));
+        }
+    }
+
+    static String bookId(int i) {
+        return "b" + i;
+    }
+
+    static String userId(int i) {
+        return "u" + i;
+    }
+}
@@ -0,0 +1,60 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title search latency over catalogs of up to a million generated titles,
+ * compared with scanning findAll.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+    private static final String[] WORDS = {
+            "java", "history", "programming", "bible", "war", "patterns", "advanced", "garden",
+            "cooking", "ocean", "mystery", "python", "algorithms", "europe", "music", "poetry"};
+
+    @Param({"10000", "1000000"})
+    public int books;
+
+    private SearchableBookRepository bookRepo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bookRepo = new SearchableBookRepository(new MemoryBookRepository());
+        Random random = new Random(42);
+        for (int i = 0; i < books; i++) {
+            // a couple of common words plus one that is nearly unique
+            String title = WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " volume" + i;
+            bookRepo.save(new Book(BenchmarkFixtures.bookId(i), title, 1));
+        }
+    }
+
+    @Benchmark
+    public List<Book> rareWord() {
+        return bookRepo.search("volume12345", 10);
+    }
+
+    @Benchmark
+    public List<Book> twoWordsWithPrefix() {
+        return bookRepo.search("java volume99", 10);
+    }
+
+    @Benchmark
+    public List<Book> commonPrefix() {
+        return bookRepo.search("progr", 10);
+    }
+
+    @Benchmark
+    public long scanAll() {
+        return bookRepo.findAll().stream().filter(b -> b.getTitle().contains("volume12345")).count();
+    }
+}
@@ -0,0 +1,82 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a whole catalog: the parallel binary import against the same on
+ * one thread and against the CSV import. Each invocation starts from empty
+ * repositories. The 10M case needs a few GB of heap.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogTransferBenchmark {
+    @Param({"1000000", "10000000"})
+    public int records;
+
+    private Path binary;
+    private Path csv;
+    private IBookRepository bookRepo;
+    private IReservationRepository reservationRepo;
+    private ReservationService service;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        // one book per ten records, the rest reservations
+        IBookRepository books = new ConcurrentBookRepository();
+        IReservationRepository reservations = new ConcurrentReservationRepository();
+        int bookCount = records / 10;
+        for (int b = 0; b < bookCount; b++) {
+            books.save(new Book(BenchmarkFixtures.bookId(b), "Book " + b, 10));
+        }
+        for (int i = 0; i < records - bookCount; i++) {
+            reservations.save(new Reservation(BenchmarkFixtures.userId(i), BenchmarkFixtures.bookId(i % bookCount)));
+        }
+        CatalogTransfer transfer = new CatalogTransfer(new ReservationService(books, reservations), books, reservations);
+        binary = Files.createTempFile("catalog", ".bin");
+        csv = Files.createTempFile("catalog", ".csv");
+        transfer.exportBinary(binary);
+        transfer.exportCsv(csv);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyRepositories() {
+        bookRepo = new ConcurrentBookRepository();
+        reservationRepo = new ConcurrentReservationRepository();
+        service = new ReservationService(bookRepo, reservationRepo);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public CatalogTransfer.Counts importBinary() throws IOException {
+        return parallel().importBinary(binary);
+    }
+
+    @Benchmark
+    public CatalogTransfer.Counts importCsv() throws IOException {
+        return parallel().importCsv(csv);
+    }
+
+    @Benchmark
+    public CatalogTransfer.Counts importBinarySingleThread() throws IOException {
+        return new CatalogTransfer(service, bookRepo, reservationRepo).importBinary(binary);
+    }
+
+    private CatalogTransfer parallel() {
+        return new CatalogTransfer(service, bookRepo, reservationRepo,
+                Runtime.getRuntime().availableProcessors(), CatalogTransfer.DEFAULT_CHUNK_BYTES);
+    }
+}
@@ -0,0 +1,95 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the service under several threads, using the thread-safe
+ * repositories. Each thread works on its own slice of books, so this shows
+ * how well per-book locking scales. readHeavy mixes 95% listings with 5%
+ * reserve/cancel to compare reader scaling of the concurrent and snapshot
+ * repositories. Run main() for 1, 4 and 16 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReservationServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"1000", "100000", "1000000"})
+        public int reservations;
+
+        @Param({"concurrent", "snapshot"})
+        public String repository;
+
+        ReservationService service;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            IBookRepository bookRepo = BenchmarkFixtures.bookRepository(repository);
+            IReservationRepository reservationRepo = BenchmarkFixtures.reservationRepository(repository);
+            BenchmarkFixtures.fill(bookRepo, reservationRepo, reservations);
+            service = new ReservationService(bookRepo, reservationRepo);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        String user;
+        int next;
+        int op;
+
+        @Setup(Level.Trial)
+        public void setUp(org.openjdk.jmh.infra.ThreadParams params) {
+            user = "bench-" + params.getThreadIndex();
+            next = params.getThreadIndex() * 97;
+        }
+
+        String nextBook() {
+            next = (next + 1) % BenchmarkFixtures.BOOKS;
+            return BenchmarkFixtures.bookId(next);
+        }
+    }
+
+    @Benchmark
+    public void reserveAndCancel(Shared shared, PerThread thread) {
+        String bookId = thread.nextBook();
+        shared.service.reserve(thread.user, bookId);
+        shared.service.cancel(thread.user, bookId);
+    }
+
+    @Benchmark
+    public List<Reservation> listReservationsForBook(Shared shared, PerThread thread) {
+        return shared.service.listReservationsForBook(thread.nextBook());
+    }
+
+    @Benchmark
+    public Object readHeavy(Shared shared, PerThread thread) {
+        String bookId = thread.nextBook();
+        if (++thread.op % 20 != 0) {
+            return shared.service.listReservationsForBook(bookId);
+        }
+        shared.service.reserve(thread.user, bookId);
+        shared.service.cancel(thread.user, bookId);
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(ConcurrentReservationServiceBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What publishing to the event bus adds to reserve/cancel: the same
+ * operations with no listener, and with a bus that has one subscriber.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBusBenchmark {
+
+    @Param({"none", "drop", "block"})
+    public String bus;
+
+    private ReservationService service;
+    private ReservationEventBus eventBus;
+    private long consumed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        bookRepo.save(new Book("1", "The Bible", 1_000_000));
+        if (!bus.equals("none")) {
+            eventBus = new ReservationEventBus(1 << 16, bus.equals("drop")
+                    ? ReservationEventBus.Backpressure.DROP
+                    : ReservationEventBus.Backpressure.BLOCK);
+            eventBus.subscribe("counter", (event, sequence, endOfBatch) -> consumed++);
+            service.addListener(eventBus);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (eventBus != null) {
+            eventBus.close();
+        }
+    }
+
+    @Benchmark
+    public void reserveAndCancel() {
+        service.reserve("Nebojsa", "1");
+        service.cancel("Nebojsa", "1");
+    }
+}
@@ -0,0 +1,73 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every thread reserves and cancels the same book, as in a release-day
+ * burst. Compares calling the service directly with going through
+ * CombiningReservationService. Run main() for 1, 4 and 16 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotBookBenchmark {
+    private static final String HOT_BOOK = "hot";
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"concurrent", "snapshot"})
+        public String repository;
+
+        ReservationService service;
+        CombiningReservationService combining;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            IBookRepository bookRepo = BenchmarkFixtures.bookRepository(repository);
+            IReservationRepository reservationRepo = BenchmarkFixtures.reservationRepository(repository);
+            bookRepo.save(new Book(HOT_BOOK, "New Release", 1_000_000));
+            service = new ReservationService(bookRepo, reservationRepo);
+            combining = new CombiningReservationService(service);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        String user;
+
+        @Setup(Level.Trial)
+        public void setUp(org.openjdk.jmh.infra.ThreadParams params) {
+            user = "bench-" + params.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public void direct(Shared shared, PerThread thread) {
+        shared.service.tryReserve(thread.user, HOT_BOOK);
+        shared.service.tryCancel(thread.user, HOT_BOOK);
+    }
+
+    @Benchmark
+    public void combined(Shared shared, PerThread thread) {
+        shared.combining.tryReserve(thread.user, HOT_BOOK);
+        shared.combining.tryCancel(thread.user, HOT_BOOK);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(HotBookBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of idempotent calls: a retry answered from the deduplication
+ * window, against a fresh request id, against a plain reserve of an
+ * already-reserved book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotencyBenchmark {
+    private ReservationService service;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        BenchmarkFixtures.fill(bookRepo, reservationRepo, 100_000);
+        service = new ReservationService(bookRepo, reservationRepo);
+        service.reserveIdempotent("retried", "bench", BenchmarkFixtures.bookId(0));
+    }
+
+    @Benchmark
+    public ReservationOutcome replay() {
+        return service.reserveIdempotent("retried", "bench", BenchmarkFixtures.bookId(0));
+    }
+
+    @Benchmark
+    public ReservationOutcome freshId() {
+        return service.reserveIdempotent("req-" + next++, "bench", BenchmarkFixtures.bookId(0));
+    }
+
+    @Benchmark
+    public ReservationOutcome plainDuplicate() {
+        return service.tryReserve("bench", BenchmarkFixtures.bookId(0));
+    }
+}
@@ -0,0 +1,121 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several service instances (one per thread) sharing a book store that
+ * hands out copies, the way servers share a database. Every thread hits
+ * the same few books, so conditional saves conflict and retry. Run main()
+ * for 1, 4 and 16 threads; the "books" param sets how hot the contention is.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimisticInventoryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"1", "16"})
+        public int books;
+
+        IBookRepository bookRepo;
+        IReservationRepository reservationRepo;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            bookRepo = new SharedBookStore();
+            reservationRepo = new ConcurrentReservationRepository();
+            for (int b = 0; b < books; b++) {
+                bookRepo.save(new Book(BenchmarkFixtures.bookId(b), "Book " + b, 1_000_000));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Instance {
+        ReservationService service;
+        String user;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared, ThreadParams params) {
+            service = new ReservationService(shared.bookRepo, shared.reservationRepo);
+            user = "bench-" + params.getThreadIndex();
+            next = params.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public ReservationStatus reserveAndCancel(Shared shared, Instance instance) {
+        instance.next = (instance.next + 1) % shared.books;
+        String bookId = BenchmarkFixtures.bookId(instance.next);
+        ReservationStatus status = instance.service.tryReserve(instance.user, bookId).getStatus();
+        if (status == ReservationStatus.RESERVED) {
+            instance.service.cancel(instance.user, bookId);
+        }
+        return status;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(OptimisticInventoryBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    // Hands out copies and saves with a version check, like a remote database
+    static class SharedBookStore implements IBookRepository {
+        private final Map<String, Book> books = new ConcurrentHashMap<>();
+
+        @Override
+        public Book findById(String id) {
+            Book b = books.get(id);
+            return b == null ? null : copy(b);
+        }
+
+        @Override
+        public void save(Book book) {
+            books.put(book.getId(), copy(book));
+        }
+
+        @Override
+        public boolean saveIfVersion(Book book, long expectedVersion) {
+            boolean[] saved = new boolean[1];
+            books.compute(book.getId(), (id, stored) -> {
+                if (stored != null && stored.getVersion() != expectedVersion) {
+                    return stored;
+                }
+                book.setVersion(expectedVersion + 1);
+                saved[0] = true;
+                return copy(book);
+            });
+            return saved[0];
+        }
+
+        @Override
+        public List<Book> findAll() {
+            return books.values().stream().map(SharedBookStore::copy).toList();
+        }
+
+        private static Book copy(Book b) {
+            Book copy = new Book(b.getId(), b.getTitle(), b.getCopiesAvailable());
+            copy.setVersion(b.getVersion());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the service operations at 1k / 100k / 1M
+ * existing reservations, for every repository implementation.
+ * Each mutating benchmark undoes its own change so the data size stays fixed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int reservations;
+
+    @Param({"memory", "concurrent", "snapshot"})
+    public String bookRepository;
+
+    @Param({"memory", "indexed", "concurrent", "compact", "snapshot"})
+    public String reservationRepository;
+
+    private ReservationService service;
+    private int next;
+    private int nextUser;
+
+    // sold-out book with a waiting list: holders.peek() has the copy, the rest wait
+    private static final String SOLD_OUT = "sold-out";
+    private final ArrayDeque<String> holders = new ArrayDeque<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        IBookRepository bookRepo = BenchmarkFixtures.bookRepository(bookRepository);
+        IReservationRepository reservationRepo = BenchmarkFixtures.reservationRepository(reservationRepository);
+        BenchmarkFixtures.fill(bookRepo, reservationRepo, reservations);
+        service = new ReservationService(bookRepo, reservationRepo);
+
+        bookRepo.save(new Book(SOLD_OUT, "Sold Out", 1));
+        for (int i = 0; i < 16; i++) {
+            String user = "w" + i;
+            service.reservePriority(user, SOLD_OUT);
+            holders.add(user);
+        }
+    }
+
+    private String nextBook() {
+        next = (next + 1) % BenchmarkFixtures.BOOKS;
+        return BenchmarkFixtures.bookId(next);
+    }
+
+    // covers reserve plus cancel without a waiting list
+    @Benchmark
+    public void reserveAndCancel() {
+        String bookId = nextBook();
+        service.reserve("bench", bookId);
+        service.cancel("bench", bookId);
+    }
+
+    @Benchmark
+    public void reservePriorityAndCancel() {
+        // no copies left, so this goes through the waiting list path
+        service.reservePriority("bench", SOLD_OUT);
+        service.cancel("bench", SOLD_OUT);
+    }
+
+    @Benchmark
+    public void cancelWithWaitingList() {
+        // holder cancels, first waiting user is promoted, holder re-joins the queue
+        String holder = holders.poll();
+        service.cancel(holder, SOLD_OUT);
+        service.reservePriority(holder, SOLD_OUT);
+        holders.add(holder);
+    }
+
+    @Benchmark
+    public List<Reservation> listReservations() {
+        return service.listReservations(BenchmarkFixtures.userId(nextUser++ % reservations));
+    }
+
+    @Benchmark
+    public List<Reservation> listReservationsForBook() {
+        return service.listReservationsForBook(nextBook());
+    }
+}
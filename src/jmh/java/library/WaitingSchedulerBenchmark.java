@@ -0,0 +1,48 @@
+package library;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady state of a very long waiting list: each operation promotes one
+ * waiter and a new one joins in a random tier, so the list stays at its
+ * size. Cost should not grow with the number queued.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WaitingSchedulerBenchmark {
+    private static final ReservationTier[] TIERS = ReservationTier.values();
+
+    @Param({"100000", "1000000", "4000000"})
+    public int queued;
+
+    private WaitingScheduler scheduler;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = new WaitingScheduler();
+        for (next = 0; next < queued; next++) {
+            scheduler.enqueue(BenchmarkFixtures.userId(next), tier(next));
+        }
+    }
+
+    @Benchmark
+    public String promoteAndJoin() {
+        String promoted = scheduler.poll();
+        scheduler.enqueue(BenchmarkFixtures.userId(next), tier(next));
+        next++;
+        return promoted;
+    }
+
+    // 2/16 staff, 5/16 course, the rest general, scrambled
+    private static ReservationTier tier(int i) {
+        int h = (i * 0x9E3779B9) >>> 28;
+        return h < 2 ? TIERS[0] : h < 7 ? TIERS[1] : TIERS[2];
+    }
+}
@@ -0,0 +1,185 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log written through a memory-mapped file.
+ * Each record is [int length][int crc][payload]; a zero length marks the end.
+ * Writes go straight into the mapping and are forced to disk every
+ * flushEvery records (group commit) or on flush()/close(). A flush only
+ * holds the log's monitor to note how far to force, so appends carry on
+ * into the mapping while the disk catches up.
+ */
+class AppendOnlyLog implements Closeable {
+    private static final int HEADER = 8;
+    private static final int MIN_MAPPING = 1 << 20;
+
+    private final Path file;
+    private final int flushEvery;
+    // one flush at a time, so a flush that finds nothing to do returns
+    // only after the one in progress is on disk
+    private final Object flushLock = new Object();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long records;
+    private int unflushed;
+
+    AppendOnlyLog(Path file, int flushEvery) throws IOException {
+        if (flushEvery <= 0) {
+            throw new IllegalArgumentException("flushEvery must be positive");
+        }
+        this.file = file;
+        this.flushEvery = flushEvery;
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(channel.size(), MIN_MAPPING));
+        records = 0;
+        unflushed = 0;
+        // find the end of the valid records
+        while (readNext() != null) {
+            records++;
+        }
+    }
+
+    private void map(long size) throws IOException {
+        int position = buffer == null ? 0 : buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.position(position);
+    }
+
+    // Reads the record at the current position and moves past it, or
+    // returns null (leaving the position alone) at the end or at a torn write.
+    private ByteBuffer readNext() {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > buffer.remaining() - HEADER) {
+            return null;
+        }
+        int crc = buffer.getInt(start + 4);
+        ByteBuffer payload = buffer.slice(start + HEADER, length).asReadOnlyBuffer();
+        if (crc != checksum(payload.duplicate())) {
+            return null;
+        }
+        buffer.position(start + HEADER + length);
+        return payload;
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Calls visitor with each record payload in write order.
+     */
+    synchronized void replay(Consumer<ByteBuffer> visitor) {
+        int end = buffer.position();
+        buffer.position(0);
+        try {
+            ByteBuffer payload;
+            while (buffer.position() < end && (payload = readNext()) != null) {
+                visitor.accept(payload);
+            }
+        } finally {
+            buffer.position(end);
+        }
+    }
+
+    void append(byte[] payload) throws IOException {
+        boolean due;
+        synchronized (this) {
+            due = write(payload);
+        }
+        if (due) {
+            flush();
+        }
+    }
+
+    // Returns true once flushEvery records are waiting for a flush
+    private boolean write(byte[] payload) throws IOException {
+        int needed = HEADER + payload.length;
+        // keep room for the zero end marker after this record
+        if (buffer.remaining() < needed + 4) {
+            long size = Math.max(buffer.capacity() * 2L, buffer.position() + needed + MIN_MAPPING);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Log is larger than a single mapping: " + file);
+            }
+            buffer.force();
+            map(size);
+        }
+        int start = buffer.position();
+        buffer.putInt(start + 4, checksum(ByteBuffer.wrap(payload)));
+        buffer.position(start + HEADER);
+        buffer.put(payload);
+        // length last, so a torn write never looks like a complete record
+        buffer.putInt(start, payload.length);
+        records++;
+        return ++unflushed >= flushEvery;
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            MappedByteBuffer mapped;
+            int end;
+            synchronized (this) {
+                if (unflushed == 0) {
+                    return;
+                }
+                unflushed = 0;
+                mapped = buffer;
+                end = buffer.position();
+            }
+            // a remap since leaves this mapping valid over the same pages
+            mapped.force(0, end);
+        }
+    }
+
+    synchronized long recordCount() {
+        return records;
+    }
+
+    /**
+     * Replaces the log with just the given records (compaction).
+     * The new file is written next to the old one and moved over it.
+     */
+    synchronized void rewrite(Iterable<byte[]> live) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        Files.deleteIfExists(tmp);
+        try (AppendOnlyLog compacted = new AppendOnlyLog(tmp, Integer.MAX_VALUE)) {
+            for (byte[] payload : live) {
+                compacted.append(payload);
+            }
+        }
+        close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        buffer = null;
+        open();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            unflushed = 0;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package library;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade over ReservationService. Every call runs on the
+ * executor and returns a CompletableFuture; business failures (book not
+ * found, duplicate, no copies...) complete normally with a
+ * ReservationOutcome. Only unexpected errors, e.g. a failing repository,
+ * complete the future exceptionally.
+ */
+public class AsyncReservationService implements AutoCloseable {
+    // requests mostly wait on book locks and fsyncs, so a few per core
+    private static final int THREADS_PER_CORE = 4;
+    private static final int QUEUED_PER_THREAD = 256;
+
+    private final ReservationService service;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Uses a fixed pool of daemon threads, a few per core, with a bounded
+     * queue. Once the queue is full the caller runs its own request, which
+     * slows callers down instead of piling up threads or tasks. The build
+     * targets Java 17, which has no virtual threads; on a newer JDK pass
+     * Executors.newVirtualThreadPerTaskExecutor() to the other constructor.
+     */
+    public AsyncReservationService(ReservationService service) {
+        this(service, defaultExecutor(), true);
+    }
+
+    /**
+     * Runs requests on the given executor. The caller keeps ownership of it.
+     */
+    public AsyncReservationService(ReservationService service, ExecutorService executor) {
+        this(service, executor, false);
+    }
+
+    private AsyncReservationService(ReservationService service, ExecutorService executor, boolean ownsExecutor) {
+        this.service = service;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public CompletableFuture<ReservationOutcome> reserveAsync(String userId, String bookId) {
+        return CompletableFuture.supplyAsync(() -> service.tryReserve(userId, bookId), executor);
+    }
+
+    public CompletableFuture<ReservationOutcome> reservePriorityAsync(String userId, String bookId) {
+        return CompletableFuture.supplyAsync(() -> service.tryReservePriority(userId, bookId), executor);
+    }
+
+    public CompletableFuture<ReservationOutcome> cancelAsync(String userId, String bookId) {
+        return CompletableFuture.supplyAsync(() -> service.tryCancel(userId, bookId), executor);
+    }
+
+    public CompletableFuture<List<Reservation>> listReservationsAsync(String userId) {
+        return CompletableFuture.supplyAsync(() -> service.listReservations(userId), executor);
+    }
+
+    public CompletableFuture<List<Reservation>> listReservationsForBookAsync(String bookId) {
+        return CompletableFuture.supplyAsync(() -> service.listReservationsForBook(bookId), executor);
+    }
+
+    /**
+     * Shuts down the executor if this facade created it.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    static ExecutorService defaultExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors() * THREADS_PER_CORE;
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_PER_THREAD), r -> {
+                    Thread t = new Thread(r, "reservation-async-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -1,9 +1,15 @@
 package library;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 public class Book {
+    private static final AtomicIntegerFieldUpdater<Book> COPIES =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "copiesAvailable");
+
     private String id;
     private String title;
-    private int copiesAvailable;
+    private volatile int copiesAvailable;
+    private volatile long version;
 
     // Constructor
     public Book(String id, String title, int copiesAvailable) {
@@ -25,9 +31,46 @@ public class Book {
         return copiesAvailable;
     }
 
+    /**
+     * Bumped by the repository on every conditional save, see
+     * IBookRepository.saveIfVersion.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     // Single Setter
     public void setCopiesAvailable(int copiesAvailable) {
         this.copiesAvailable = copiesAvailable;
     }
 
+    // Set by repositories only
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    // Inventory - lock-free, safe to call from several threads
+
+    /**
+     * Take one copy if any is left.
+     * Returns false instead of going below zero.
+     */
+    public boolean tryAcquireCopy() {
+        int current;
+        do {
+            current = copiesAvailable;
+            if (current <= 0) {
+                return false;
+            }
+        } while (!COPIES.compareAndSet(this, current, current - 1));
+        return true;
+    }
+
+    /**
+     * Give one copy back and return the new count.
+     */
+    public int releaseCopy() {
+        return COPIES.incrementAndGet(this);
+    }
+
 }
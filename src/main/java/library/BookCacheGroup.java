@@ -0,0 +1,29 @@
+package library;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Caches in front of the same backing book repository. A save through one
+ * member invalidates that book in all the others, so no member keeps
+ * serving a stale copiesAvailable.
+ */
+class BookCacheGroup {
+    private final List<CachingBookRepository> members = new CopyOnWriteArrayList<>();
+
+    void join(CachingBookRepository cache) {
+        members.add(cache);
+    }
+
+    void leave(CachingBookRepository cache) {
+        members.remove(cache);
+    }
+
+    void invalidateOthers(CachingBookRepository source, String bookId) {
+        for (CachingBookRepository member : members) {
+            if (member != source) {
+                member.invalidate(bookId);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package library;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks that bookIds hash onto, so operations on different
+ * books can run in parallel without allocating a lock per book.
+ */
+class BookLockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    BookLockStripes(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive");
+        }
+        // round up to a power of two so we can mask instead of mod
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    ReentrantLock lockFor(String bookId) {
+        int h = bookId.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & mask];
+    }
+
+    /**
+     * Takes every stripe, always in the same order, to stop all book
+     * operations at once. Callers must not already hold a stripe.
+     */
+    void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    int size() {
+        return locks.length;
+    }
+}
@@ -0,0 +1,243 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from lower-cased title words to book ids.
+ * Words are kept in a sorted map so the last, possibly unfinished word of
+ * a query can be matched as a prefix (type-ahead). Updates are
+ * incremental: re-indexing a book only touches its own words, and a save
+ * that doesn't change the title costs one map lookup without any lock.
+ * Each word's books are kept in ranking order (shorter titles, then id),
+ * so a search stops reading a word's books once they can't make the top k.
+ * Searches run in parallel; updates take the write lock.
+ */
+class BookTitleIndex {
+    private final NavigableMap<String, NavigableSet<Posting>> postings = new TreeMap<>();
+    private final Map<String, String[]> wordsOf = new HashMap<>();
+    private final Map<String, String> titleOf = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds the book, or re-indexes it if its title changed.
+     */
+    void index(String bookId, String rawTitle) {
+        // indexed the same as an empty title; the map can't hold null
+        String title = rawTitle == null ? "" : rawTitle;
+        // most saves only move the copy count
+        if (title.equals(titleOf.get(bookId))) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            String old = titleOf.put(bookId, title);
+            if (title.equals(old)) {
+                return;
+            }
+            String[] oldWords = wordsOf.remove(bookId);
+            if (oldWords != null) {
+                Posting stale = new Posting(oldWords.length, bookId);
+                for (String word : oldWords) {
+                    Set<Posting> ids = postings.get(word);
+                    if (ids != null && ids.remove(stale) && ids.isEmpty()) {
+                        postings.remove(word);
+                    }
+                }
+            }
+            String[] words = tokenize(title).stream().distinct().toArray(String[]::new);
+            wordsOf.put(bookId, words);
+            Posting posting = new Posting(words.length, bookId);
+            for (String word : words) {
+                postings.computeIfAbsent(word, k -> new TreeSet<>()).add(posting);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to k books whose titles contain every word of the query,
+     * the last word matching as a prefix. Books where the last word is a
+     * whole word come first, then shorter titles, then by id.
+     */
+    List<String> search(String query, int k) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        String prefix = terms.get(terms.size() - 1);
+        List<String> whole = terms.subList(0, terms.size() - 1);
+
+        lock.readLock().lock();
+        try {
+            // worst match on top so it's the one dropped
+            PriorityQueue<Match> best = new PriorityQueue<>(k + 1, Comparator.reverseOrder());
+            Set<Posting> smallest = smallestPosting(whole);
+            if (smallest != null) {
+                // drive from the rarest whole word and check the rest per book
+                for (Posting p : smallest) {
+                    String[] words = wordsOf.get(p.bookId());
+                    if (containsAll(words, whole)) {
+                        int rank = prefixRank(words, prefix);
+                        if (rank >= 0) {
+                            offer(best, k, new Match(p.bookId(), rank, words.length));
+                        }
+                    }
+                }
+            } else if (whole.isEmpty()) {
+                searchPrefix(prefix, k, best);
+            }
+            List<String> ids = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                ids.add(best.poll().bookId());
+            }
+            Collections.reverse(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return titleOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // Books that are the exact word come first and in posting order, so
+    // the first k of them are the answer. Otherwise each longer word's
+    // books are read only while they still beat the current k-th match.
+    private void searchPrefix(String prefix, int k, PriorityQueue<Match> best) {
+        NavigableSet<Posting> exact = postings.get(prefix);
+        if (exact != null) {
+            for (Posting p : exact) {
+                if (best.size() == k) {
+                    return;
+                }
+                best.add(new Match(p.bookId(), 0, p.length()));
+            }
+        }
+        for (Map.Entry<String, NavigableSet<Posting>> entry : prefixRange(prefix).entrySet()) {
+            if (entry.getKey().equals(prefix)) {
+                continue;
+            }
+            for (Posting p : entry.getValue()) {
+                Match match = new Match(p.bookId(), 1, p.length());
+                if (best.size() == k && match.compareTo(best.peek()) >= 0) {
+                    break;
+                }
+                // a book can match through several words - rank it once, by its best word
+                if ((exact == null || !exact.contains(p)) && !best.contains(match)) {
+                    offer(best, k, match);
+                }
+            }
+        }
+    }
+
+    // Smallest posting set of the words, or null if there are none or one is missing
+    private Set<Posting> smallestPosting(List<String> words) {
+        Set<Posting> smallest = null;
+        for (String word : words) {
+            Set<Posting> ids = postings.get(word);
+            if (ids == null) {
+                return null;
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+
+    private SortedMap<String, NavigableSet<Posting>> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static boolean containsAll(String[] words, List<String> required) {
+        for (String r : required) {
+            boolean found = false;
+            for (String w : words) {
+                if (w.equals(r)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 0 for a whole-word match, 1 for a prefix match, -1 for none
+    private static int prefixRank(String[] words, String prefix) {
+        int rank = -1;
+        for (String w : words) {
+            if (w.equals(prefix)) {
+                return 0;
+            }
+            if (w.startsWith(prefix)) {
+                rank = 1;
+            }
+        }
+        return rank;
+    }
+
+    private static void offer(PriorityQueue<Match> best, int k, Match match) {
+        if (best.size() < k) {
+            best.add(match);
+        } else if (match.compareTo(best.peek()) < 0) {
+            best.poll();
+            best.add(match);
+        }
+    }
+
+    // A book under one word, ordered the way matches of equal rank are
+    private record Posting(int length, String bookId) implements Comparable<Posting> {
+        @Override
+        public int compareTo(Posting other) {
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return bookId.compareTo(other.bookId);
+        }
+    }
+
+    private record Match(String bookId, int rank, int length) implements Comparable<Match> {
+        @Override
+        public int compareTo(Match other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return bookId.compareTo(other.bookId);
+        }
+    }
+}
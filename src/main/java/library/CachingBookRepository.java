@@ -0,0 +1,165 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through, write-through LRU cache in front of another book repository.
+ * findById is served from the cache when possible; save always goes to the
+ * backing repository first. Caches of several service instances sharing
+ * one backing repository should join the same BookCacheGroup so that a save
+ * through one of them drops the stale entry from the others.
+ */
+class CachingBookRepository implements IBookRepository {
+    private final IBookRepository backing;
+    private final BookCacheGroup group;
+    private final Map<String, Book> cache;
+    // bumped under the cache lock by every write, so a miss that loaded
+    // before one doesn't put back what was just replaced
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    CachingBookRepository(IBookRepository backing, int maxSize) {
+        this(backing, maxSize, null);
+    }
+
+    CachingBookRepository(IBookRepository backing, int maxSize, BookCacheGroup group) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.backing = backing;
+        this.group = group;
+        // access-ordered LinkedHashMap gives LRU eviction
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Book> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (group != null) {
+            group.join(this);
+        }
+    }
+
+    @Override
+    public Book findById(String id) {
+        Book book;
+        long loadEpoch;
+        synchronized (cache) {
+            book = cache.get(id);
+            loadEpoch = epoch;
+        }
+        if (book != null) {
+            hits.increment();
+            return book;
+        }
+        misses.increment();
+        book = backing.findById(id);
+        if (book != null) {
+            synchronized (cache) {
+                if (epoch == loadEpoch) {
+                    cache.putIfAbsent(id, book);
+                }
+            }
+        }
+        return book;
+    }
+
+    @Override
+    public void save(Book book) {
+        backing.save(book);
+        synchronized (cache) {
+            epoch++;
+            cache.put(book.getId(), book);
+        }
+        if (group != null) {
+            group.invalidateOthers(this, book.getId());
+        }
+    }
+
+    // A bulk load would just churn the cache - drop stale entries instead
+    @Override
+    public void saveAll(Collection<Book> books) {
+        backing.saveAll(books);
+        for (Book book : books) {
+            invalidate(book.getId());
+            if (group != null) {
+                group.invalidateOthers(this, book.getId());
+            }
+        }
+    }
+
+    @Override
+    public boolean saveIfVersion(Book book, long expectedVersion) {
+        if (!backing.saveIfVersion(book, expectedVersion)) {
+            // our copy is stale - make the retry read the current one
+            invalidate(book.getId());
+            return false;
+        }
+        synchronized (cache) {
+            epoch++;
+            cache.put(book.getId(), book);
+        }
+        if (group != null) {
+            group.invalidateOthers(this, book.getId());
+        }
+        return true;
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return backing.findAll();
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return backing.streamAll();
+    }
+
+    void invalidate(String id) {
+        synchronized (cache) {
+            epoch++;
+            cache.remove(id);
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (cache) {
+            epoch++;
+            cache.clear();
+        }
+    }
+
+    // Statistics
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
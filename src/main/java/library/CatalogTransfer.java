@@ -0,0 +1,692 @@
+package library;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk export and import of the whole catalog - books, reservations and
+ * waiting lists - without holding it on the heap.
+ *
+ * The binary format is a header [int magic][int version][int chunk size]
+ * followed by chunks [byte kind][int records][int bytes][records], each at
+ * most chunk size long. A book is [id][title][int copies], a reservation
+ * [user id][book id], a waiter [book id][user id][int tier][long ticket]
+ * and a waiting list's clock [book id][long next ticket]; strings are [unsigned short length][UTF-8]. Chunks are written and read
+ * through a FileChannel with direct buffers, and on import each chunk is
+ * decoded and handed to saveAll on a worker thread. At most two chunks per
+ * thread are in flight, and a chunk header is checked against
+ * MAX_CHUNK_BYTES before anything is allocated, so the memory books and
+ * reservations take stays bounded whatever the file holds. Waiting lists
+ * are the exception: chunks may be decoded out of order and a list has to
+ * be restored in ticket order, so waiters are kept on the heap until the
+ * end, about one object per waiting user.
+ *
+ * The CSV format is one record per line, "book,id,title,copies",
+ * "reservation,userId,bookId", "waiting,bookId,userId,tier,ticket" or
+ * "waiting-clock,bookId,nextTicket", quoted where needed.
+ *
+ * A waiting user also has a reservation; the waiter record says they are
+ * queued rather than holding a copy, and the ticket keeps their age in
+ * the queue. Ages are measured against the list's next ticket, which
+ * users who already left also drew from, so it is saved as well. Waiting
+ * lists are put back once every chunk is saved.
+ *
+ * Imports run on one thread unless asked for more. With more than one
+ * the repositories must take concurrent saves (the Concurrent, Snapshot
+ * and File ones do). Existing books with the same id are replaced.
+ */
+class CatalogTransfer {
+    static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    private static final int MAGIC = 0x4C494243;
+    // version 1 files have no waiting lists, version 2 no waiting-list clocks
+    private static final int FORMAT_VERSION = 3;
+    private static final int FILE_HEADER = 12;
+    private static final int CHUNK_HEADER = 9;
+    private static final int MIN_CHUNK_BYTES = 1 << 18;
+    // bounds the buffers an import allocates, whatever the file header says
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final byte BOOKS = 1;
+    private static final byte RESERVATIONS = 2;
+    private static final byte WAITING = 3;
+    private static final byte CLOCKS = 4;
+    private static final int CSV_BATCH = 8192;
+    private static final String CSV_BOOK = "book";
+    private static final String CSV_RESERVATION = "reservation";
+    private static final String CSV_WAITING = "waiting";
+    private static final String CSV_CLOCK = "waiting-clock";
+
+    private final ReservationService service;
+    private final IBookRepository bookRepo;
+    private final IReservationRepository reservationRepo;
+    private final int threads;
+    private final int chunkBytes;
+
+    /**
+     * service must be built on bookRepo and reservationRepo; its waiting
+     * lists are exported and restored with them.
+     */
+    CatalogTransfer(ReservationService service, IBookRepository bookRepo, IReservationRepository reservationRepo) {
+        this(service, bookRepo, reservationRepo, 1, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * chunkBytes applies to exports; imports use the size in the file.
+     */
+    CatalogTransfer(ReservationService service, IBookRepository bookRepo, IReservationRepository reservationRepo,
+                    int threads, int chunkBytes) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (chunkBytes < MIN_CHUNK_BYTES || chunkBytes > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Chunk size must be between " + MIN_CHUNK_BYTES
+                    + " and " + MAX_CHUNK_BYTES + " bytes");
+        }
+        this.service = service;
+        this.bookRepo = bookRepo;
+        this.reservationRepo = reservationRepo;
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Number of books, reservations and waiting users written or loaded.
+     */
+    record Counts(long books, long reservations, long waiting) {
+        Counts(long books, long reservations) {
+            this(books, reservations, 0);
+        }
+    }
+
+    // Binary
+
+    /**
+     * Writes every book, its reservations and its waiting list to file,
+     * replacing it. Books are streamed from the repository, so only one
+     * chunk per kind of record is buffered at a time.
+     */
+    Counts exportBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(chunkBytes).flip();
+            writeFully(channel, header);
+
+            ChunkWriter books = new ChunkWriter(channel, BOOKS);
+            ChunkWriter reservations = new ChunkWriter(channel, RESERVATIONS);
+            ChunkWriter waiting = new ChunkWriter(channel, WAITING);
+            ChunkWriter clocks = new ChunkWriter(channel, CLOCKS);
+            Iterator<Book> it = bookRepo.streamAll().iterator();
+            while (it.hasNext()) {
+                Book book = it.next();
+                books.add(book.getId(), book.getTitle(), book.getCopiesAvailable());
+                Iterator<Reservation> rs = reservationRepo.streamByBook(book.getId()).iterator();
+                while (rs.hasNext()) {
+                    Reservation r = rs.next();
+                    reservations.add(r.getUserId(), r.getBookId());
+                }
+                for (WaitingScheduler.Waiter w : service.waiters(book.getId())) {
+                    waiting.add(book.getId(), w.userId(), w.tier().ordinal(), w.ticket());
+                }
+                long clock = service.nextWaitingTicket(book.getId());
+                if (clock >= 0) {
+                    clocks.add(book.getId(), clock);
+                }
+            }
+            books.flush();
+            reservations.flush();
+            waiting.flush();
+            clocks.flush();
+            return new Counts(books.total, reservations.total, waiting.total);
+        }
+    }
+
+    /**
+     * Loads a file written by exportBinary into the repositories.
+     */
+    Counts importBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Loader loader = new Loader()) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+            if (!readFully(channel, header)) {
+                throw new IOException("Empty catalog file: " + file);
+            }
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Not a catalog file: " + file);
+            }
+            int fileChunkBytes = header.getInt();
+            if (fileChunkBytes < MIN_CHUNK_BYTES || fileChunkBytes > MAX_CHUNK_BYTES) {
+                throw new IOException("Corrupt catalog header: " + file);
+            }
+
+            // direct buffers are recycled through free; more are only
+            // allocated while fewer than the in-flight limit exist
+            BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(loader.maxInFlight());
+            int allocated = 0;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER);
+            while (true) {
+                chunkHeader.clear();
+                if (!readFully(channel, chunkHeader)) {
+                    break;
+                }
+                chunkHeader.flip();
+                byte kind = chunkHeader.get();
+                int count = chunkHeader.getInt();
+                int length = chunkHeader.getInt();
+                // every record takes at least four bytes, so count can't ask
+                // for more than length / 4 entries
+                if (kind < BOOKS || kind > CLOCKS || count < 0
+                        || length < 0 || length > fileChunkBytes - CHUNK_HEADER || count > length / 4) {
+                    throw new IOException("Corrupt chunk header in " + file);
+                }
+
+                ByteBuffer chunk = free.poll();
+                if (chunk == null && allocated < loader.maxInFlight()) {
+                    chunk = ByteBuffer.allocateDirect(fileChunkBytes - CHUNK_HEADER);
+                    allocated++;
+                } else if (chunk == null) {
+                    chunk = takeBuffer(free);
+                }
+                chunk.clear().limit(length);
+                if (!readFully(channel, chunk)) {
+                    throw new EOFException("Truncated catalog file: " + file);
+                }
+                chunk.flip();
+                ByteBuffer loaded = chunk;
+                loader.submit(() -> {
+                    try {
+                        decodeChunk(kind, count, loaded, loader);
+                    } finally {
+                        free.add(loaded);
+                    }
+                });
+            }
+            return loader.finish();
+        }
+    }
+
+    private void decodeChunk(byte kind, int count, ByteBuffer chunk, Loader loader) {
+        try {
+            if (kind == BOOKS) {
+                List<Book> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String id = readString(chunk);
+                    String title = readString(chunk);
+                    batch.add(new Book(id, title, chunk.getInt()));
+                }
+                checkConsumed(chunk);
+                bookRepo.saveAll(batch);
+                loader.books.add(count);
+            } else if (kind == RESERVATIONS) {
+                List<Reservation> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String userId = readString(chunk);
+                    batch.add(new Reservation(userId, readString(chunk)));
+                }
+                checkConsumed(chunk);
+                reservationRepo.saveAll(batch);
+                loader.reservations.add(count);
+            } else if (kind == CLOCKS) {
+                for (int i = 0; i < count; i++) {
+                    String bookId = readString(chunk);
+                    loader.clocks.put(bookId, chunk.getLong());
+                }
+                checkConsumed(chunk);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    String bookId = readString(chunk);
+                    String userId = readString(chunk);
+                    int tier = chunk.getInt();
+                    if (tier < 0 || tier >= ReservationTier.values().length) {
+                        throw new UncheckedIOException(new IOException("Corrupt chunk: unknown tier " + tier));
+                    }
+                    loader.addWaiter(bookId, new WaitingScheduler.Waiter(
+                            userId, ReservationTier.values()[tier], chunk.getLong()));
+                }
+                checkConsumed(chunk);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(new IOException("Corrupt chunk: fewer records than declared"));
+        }
+    }
+
+    private static void checkConsumed(ByteBuffer chunk) {
+        if (chunk.hasRemaining()) {
+            throw new UncheckedIOException(new IOException("Corrupt chunk: more bytes than records"));
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] b = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer takeBuffer(BlockingQueue<ByteBuffer> free) throws IOException {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing");
+        }
+    }
+
+    // Returns false if the channel was already at its end; a partial read is an error
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == start) {
+                    return false;
+                }
+                throw new EOFException("Truncated catalog file");
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Fills one direct buffer with records of a kind and writes it out when full
+    private final class ChunkWriter {
+        private final FileChannel channel;
+        private final byte kind;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(chunkBytes);
+        private int count;
+        private long total;
+
+        ChunkWriter(FileChannel channel, byte kind) {
+            this.channel = channel;
+            this.kind = kind;
+            buffer.position(CHUNK_HEADER);
+        }
+
+        void add(String first, String second, int number) throws IOException {
+            byte[] a = fieldBytes(first);
+            byte[] b = fieldBytes(second);
+            reserve(4 + a.length + b.length + 4);
+            buffer.putShort((short) a.length).put(a).putShort((short) b.length).put(b).putInt(number);
+            count++;
+        }
+
+        void add(String first, String second, int number, long wide) throws IOException {
+            byte[] a = fieldBytes(first);
+            byte[] b = fieldBytes(second);
+            reserve(4 + a.length + b.length + 12);
+            buffer.putShort((short) a.length).put(a).putShort((short) b.length).put(b).putInt(number).putLong(wide);
+            count++;
+        }
+
+        void add(String first, long wide) throws IOException {
+            byte[] a = fieldBytes(first);
+            reserve(2 + a.length + 8);
+            buffer.putShort((short) a.length).put(a).putLong(wide);
+            count++;
+        }
+
+        void add(String first, String second) throws IOException {
+            byte[] a = fieldBytes(first);
+            byte[] b = fieldBytes(second);
+            reserve(4 + a.length + b.length);
+            buffer.putShort((short) a.length).put(a).putShort((short) b.length).put(b);
+            count++;
+        }
+
+        // fields are at most 64K each, so a record always fits an empty chunk
+        private void reserve(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            buffer.put(0, kind).putInt(1, count).putInt(5, buffer.position() - CHUNK_HEADER);
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear().position(CHUNK_HEADER);
+            total += count;
+            count = 0;
+        }
+    }
+
+    private static byte[] fieldBytes(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Field longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        return b;
+    }
+
+    // CSV
+
+    /**
+     * Writes every book, its reservations and its waiting list to file as
+     * CSV, replacing it.
+     */
+    Counts exportCsv(Path file) throws IOException {
+        long books = 0;
+        long reservations = 0;
+        long waiting = 0;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            Iterator<Book> it = bookRepo.streamAll().iterator();
+            while (it.hasNext()) {
+                Book book = it.next();
+                writeCsvLine(out, CSV_BOOK, book.getId(), book.getTitle(),
+                        Integer.toString(book.getCopiesAvailable()));
+                books++;
+                Iterator<Reservation> rs = reservationRepo.streamByBook(book.getId()).iterator();
+                while (rs.hasNext()) {
+                    Reservation r = rs.next();
+                    writeCsvLine(out, CSV_RESERVATION, r.getUserId(), r.getBookId());
+                    reservations++;
+                }
+                for (WaitingScheduler.Waiter w : service.waiters(book.getId())) {
+                    writeCsvLine(out, CSV_WAITING, book.getId(), w.userId(), w.tier().name(),
+                            Long.toString(w.ticket()));
+                    waiting++;
+                }
+                long clock = service.nextWaitingTicket(book.getId());
+                if (clock >= 0) {
+                    writeCsvLine(out, CSV_CLOCK, book.getId(), Long.toString(clock));
+                }
+            }
+        }
+        return new Counts(books, reservations, waiting);
+    }
+
+    /**
+     * Loads a CSV file in the exportCsv layout. Lines are parsed on the
+     * calling thread and saved in batches on the worker threads.
+     */
+    Counts importCsv(Path file) throws IOException {
+        try (BufferedReader in = new BufferedReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), 1 << 16);
+             Loader loader = new Loader()) {
+            List<Book> books = new ArrayList<>(CSV_BATCH);
+            List<Reservation> reservations = new ArrayList<>(CSV_BATCH);
+            long line = 0;
+            List<String> fields;
+            while ((fields = readCsvRecord(in)) != null) {
+                line++;
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue;
+                }
+                String kind = fields.get(0);
+                if (kind.equals(CSV_BOOK) && fields.size() == 4) {
+                    books.add(new Book(fields.get(1), fields.get(2), parseCopies(fields.get(3), line)));
+                    if (books.size() == CSV_BATCH) {
+                        saveBooks(loader, books);
+                        books = new ArrayList<>(CSV_BATCH);
+                    }
+                } else if (kind.equals(CSV_RESERVATION) && fields.size() == 3) {
+                    reservations.add(new Reservation(fields.get(1), fields.get(2)));
+                    if (reservations.size() == CSV_BATCH) {
+                        saveReservations(loader, reservations);
+                        reservations = new ArrayList<>(CSV_BATCH);
+                    }
+                } else if (kind.equals(CSV_WAITING) && fields.size() == 5) {
+                    loader.addWaiter(fields.get(1), new WaitingScheduler.Waiter(
+                            fields.get(2), parseTier(fields.get(3), line), parseTicket(fields.get(4), line)));
+                } else if (kind.equals(CSV_CLOCK) && fields.size() == 3) {
+                    loader.clocks.put(fields.get(1), parseTicket(fields.get(2), line));
+                } else {
+                    throw new IOException("Bad CSV record " + line + " in " + file);
+                }
+            }
+            if (!books.isEmpty()) {
+                saveBooks(loader, books);
+            }
+            if (!reservations.isEmpty()) {
+                saveReservations(loader, reservations);
+            }
+            return loader.finish();
+        }
+    }
+
+    private void saveBooks(Loader loader, List<Book> batch) throws IOException {
+        loader.submit(() -> {
+            bookRepo.saveAll(batch);
+            loader.books.add(batch.size());
+        });
+    }
+
+    private void saveReservations(Loader loader, List<Reservation> batch) throws IOException {
+        loader.submit(() -> {
+            reservationRepo.saveAll(batch);
+            loader.reservations.add(batch.size());
+        });
+    }
+
+    private static int parseCopies(String s, long line) throws IOException {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad copy count in CSV record " + line, e);
+        }
+    }
+
+    private static ReservationTier parseTier(String s, long line) throws IOException {
+        try {
+            return ReservationTier.valueOf(s);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad tier in CSV record " + line, e);
+        }
+    }
+
+    private static long parseTicket(String s, long line) throws IOException {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad ticket in CSV record " + line, e);
+        }
+    }
+
+    private static void writeCsvLine(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String f = fields[i];
+            if (f.indexOf(',') >= 0 || f.indexOf('"') >= 0 || f.indexOf('\n') >= 0 || f.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(f.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(f);
+            }
+        }
+        out.write('\n');
+    }
+
+    // One record's fields, or null at the end. Quoted fields may hold
+    // commas, doubled quotes and line breaks.
+    private static List<String> readCsvRecord(BufferedReader in) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    if (in.read() == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Runs save tasks on a private pool, at most two per thread in flight.
+    // Once one fails no more are submitted and the failure is rethrown. Waiters and clocks are
+    // gathered and handed to the service once everything else is saved.
+    private final class Loader implements AutoCloseable {
+        final LongAdder books = new LongAdder();
+        final LongAdder reservations = new LongAdder();
+        final Map<String, Long> clocks = new ConcurrentHashMap<>();
+        private final Map<String, List<WaitingScheduler.Waiter>> waiters = new ConcurrentHashMap<>();
+        private final LongAdder waiting = new LongAdder();
+        private final ExecutorService executor;
+        private final Semaphore slots = new Semaphore(maxInFlight());
+        private final List<Future<?>> pending = new ArrayList<>();
+        private volatile Throwable failure;
+
+        Loader() {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "catalog-import-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        void addWaiter(String bookId, WaitingScheduler.Waiter waiter) {
+            waiters.computeIfAbsent(bookId, k -> Collections.synchronizedList(new ArrayList<>())).add(waiter);
+            waiting.increment();
+        }
+
+        int maxInFlight() {
+            return 2 * threads;
+        }
+
+        void submit(Runnable task) throws IOException {
+            if (executor == null) {
+                run(task);
+                return;
+            }
+            throwIfFailed();
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while importing");
+            }
+            // the slot may have been freed by a failing task
+            if (failure != null) {
+                slots.release();
+                throwIfFailed();
+            }
+            pending.add(executor.submit(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    // recorded before the slot is released, so the reader sees it
+                    failure = t;
+                    throw t;
+                } finally {
+                    slots.release();
+                }
+            }));
+        }
+
+        private void throwIfFailed() throws IOException {
+            Throwable cause = failure;
+            if (cause != null) {
+                throw rethrow(cause);
+            }
+        }
+
+        private void run(Runnable task) throws IOException {
+            try {
+                task.run();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        Counts finish() throws IOException {
+            try {
+                for (Future<?> f : pending) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while importing");
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+            waiters.forEach((bookId, list) -> {
+                // chunks may have been decoded out of order; tickets give the queue order
+                list.sort(Comparator.comparingLong(WaitingScheduler.Waiter::ticket));
+                service.restoreWaiters(bookId, list);
+            });
+            clocks.forEach(service::restoreNextWaitingTicket);
+            return new Counts(books.sum(), reservations.sum(), waiting.sum());
+        }
+
+        // Throws a worker's unchecked failure as it is, or returns the
+        // IOException to throw for it
+        private IOException rethrow(Throwable cause) {
+            if (cause instanceof UncheckedIOException u) {
+                return u.getCause();
+            }
+            if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+            if (cause instanceof Error e) {
+                throw e;
+            }
+            return new IOException(cause);
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flat-combining front for a ReservationService, for bursts on one hot
+ * book. Each caller posts its request to the book's queue; whichever
+ * caller gets the book's combiner lock drains the queue and applies
+ * everything in it with one reserveAll (or cancelAll), so the book is
+ * locked, loaded, checked and saved once for the whole batch instead of
+ * once per caller. The others wait for their outcome instead of queueing
+ * on the book lock. Requests drained together are applied in arrival
+ * order, but there is no order across batches: a request that races with
+ * an idle combiner being dropped can be applied through a new one at the
+ * same time, so only the book lock orders the two. Different books never
+ * wait for each other.
+ *
+ * A lone request costs one uncontended lock and a batch of one, so the
+ * extra cost when there is no burst is small. Listeners see one
+ * RESERVE_BATCH or CANCEL_BATCH operation per batch, so with a
+ * ReservationJournal every caller's record is on disk when it returns.
+ * A book's combiner is dropped once its queue drains, so quiet books cost
+ * nothing. An interrupt doesn't cut a wait short - the request is already
+ * queued - but the caller's interrupt flag is kept.
+ */
+public class CombiningReservationService {
+    private static final int MAX_BATCH = 1024;
+    private static final int MAX_PASSES = 4;
+    private static final int SPINS = 128;
+    private static final long PARK_NANOS = 50_000;
+
+    private final ReservationService service;
+    private final Map<String, Combiner> combiners = new ConcurrentHashMap<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder combined = new LongAdder();
+
+    public CombiningReservationService(ReservationService service) {
+        this.service = service;
+    }
+
+    /**
+     * Same as ReservationService.reserve.
+     */
+    public void reserve(String userId, String bookId) {
+        ReservationService.throwIfFailed(tryReserve(userId, bookId).getStatus());
+    }
+
+    public ReservationOutcome tryReserve(String userId, String bookId) {
+        return submit(new ReservationRequest(userId, bookId), false);
+    }
+
+    public ReservationOutcome tryReservePriority(String userId, String bookId) {
+        return submit(new ReservationRequest(userId, bookId, true), false);
+    }
+
+    public ReservationOutcome tryReserve(String userId, String bookId, ReservationTier tier) {
+        return submit(new ReservationRequest(userId, bookId, tier), false);
+    }
+
+    /**
+     * Same as ReservationService.cancel.
+     */
+    public void cancel(String userId, String bookId) {
+        ReservationService.throwIfFailed(tryCancel(userId, bookId).getStatus());
+    }
+
+    public ReservationOutcome tryCancel(String userId, String bookId) {
+        return submit(new ReservationRequest(userId, bookId), true);
+    }
+
+    private ReservationOutcome submit(ReservationRequest request, boolean cancel) {
+        Combiner combiner = combiners.computeIfAbsent(request.getBookId(), Combiner::new);
+        Pending pending = new Pending(request, cancel, Thread.currentThread());
+        combiner.queue.add(pending);
+        int spins = 0;
+        boolean interrupted = false;
+        while (pending.outcome == null && pending.failure == null) {
+            if (combiner.lock.tryLock()) {
+                try {
+                    combiner.combine();
+                } finally {
+                    combiner.lock.unlock();
+                    combiner.handOff();
+                }
+            } else if (spins < SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                // a set interrupt flag would make parkNanos return at once
+                interrupted |= Thread.interrupted();
+                // woken when served or handed the combiner role; the timeout is a safety net
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable failure = pending.failure;
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return pending.outcome;
+    }
+
+    /**
+     * Number of reserveAll/cancelAll calls made on behalf of callers.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Average number of requests applied per batch; 1 means no combining happened.
+     */
+    public double getAverageBatchSize() {
+        long n = batches.sum();
+        return n == 0 ? 0 : (double) combined.sum() / n;
+    }
+
+    // Books with a live combiner, for tests
+    int getCombinerCount() {
+        return combiners.size();
+    }
+
+    // One caller's request; outcome or failure is set by the combiner
+    private static final class Pending {
+        final ReservationRequest request;
+        final boolean cancel;
+        final Thread waiter;
+        volatile ReservationOutcome outcome;
+        volatile Throwable failure;
+
+        Pending(ReservationRequest request, boolean cancel, Thread waiter) {
+            this.request = request;
+            this.cancel = cancel;
+            this.waiter = waiter;
+        }
+    }
+
+    // Publication queue and combiner lock for one book
+    private final class Combiner {
+        final String bookId;
+        final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+        final ReentrantLock lock = new ReentrantLock();
+
+        Combiner(String bookId) {
+            this.bookId = bookId;
+        }
+
+        // Caller holds lock. A few passes pick up requests that arrive
+        // while the previous batch was being applied.
+        void combine() {
+            List<Pending> batch = new ArrayList<>();
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                Pending p;
+                while (batch.size() < MAX_BATCH && (p = queue.poll()) != null) {
+                    batch.add(p);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                try {
+                    apply(batch);
+                } catch (Throwable t) {
+                    // an Error escaped apply; the callers it left unserved
+                    // get it too instead of waiting forever
+                    for (Pending unserved : batch) {
+                        if (unserved.outcome == null && unserved.failure == null) {
+                            unserved.failure = t;
+                            LockSupport.unpark(unserved.waiter);
+                        }
+                    }
+                    throw t;
+                }
+                batch.clear();
+            }
+            if (queue.isEmpty()) {
+                // a caller that still got this combiner from the map
+                // serves itself through it, so nothing is stranded
+                combiners.remove(bookId, this);
+            }
+        }
+
+        // Reserves and cancels alternate in runs, so each run keeps its place in the order
+        private void apply(List<Pending> batch) {
+            int start = 0;
+            while (start < batch.size()) {
+                boolean cancel = batch.get(start).cancel;
+                int end = start + 1;
+                while (end < batch.size() && batch.get(end).cancel == cancel) {
+                    end++;
+                }
+                List<Pending> run = batch.subList(start, end);
+                List<ReservationRequest> requests = new ArrayList<>(run.size());
+                for (Pending p : run) {
+                    requests.add(p.request);
+                }
+                try {
+                    List<ReservationOutcome> outcomes = cancel
+                            ? service.cancelAll(requests)
+                            : service.reserveAll(requests);
+                    for (int i = 0; i < run.size(); i++) {
+                        run.get(i).outcome = outcomes.get(i);
+                    }
+                } catch (RuntimeException e) {
+                    // a failing repository fails the whole run, as it would each caller
+                    for (Pending p : run) {
+                        p.failure = e;
+                    }
+                }
+                batches.increment();
+                combined.add(run.size());
+                for (Pending p : run) {
+                    LockSupport.unpark(p.waiter);
+                }
+                start = end;
+            }
+        }
+
+        // Wakes a waiter left in the queue so it takes over combining
+        void handOff() {
+            Pending next = queue.peek();
+            if (next != null) {
+                LockSupport.unpark(next.waiter);
+            }
+        }
+    }
+}
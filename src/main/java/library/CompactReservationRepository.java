@@ -0,0 +1,168 @@
+package library;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Low-footprint reservation repository. User and book ids are interned to
+ * int handles and each reservation is one packed long (user << 32 | book)
+ * in a primitive hash map, plus an int in the per-user and per-book lists.
+ * The map's value is where the reservation sits in both lists, so delete
+ * swaps the last entry into the gap in O(1) (findByUser/findByBook order
+ * is not kept across deletes). A user or book whose last reservation goes
+ * gives its handle back. Reservation objects are only created for
+ * findByUser/findByBook results. Not thread-safe, like
+ * MemoryReservationRepository.
+ */
+class CompactReservationRepository implements IReservationRepository {
+    private final StringInterner users = new StringInterner();
+    private final StringInterner books = new StringInterner();
+    // key(user, book) -> position(index in the user's list, index in the book's list)
+    private final LongLongHashMap reservations;
+    // indexed by handle: book handles per user, user handles per book
+    private final List<IntList> booksByUser = new ArrayList<>();
+    private final List<IntList> usersByBook = new ArrayList<>();
+
+    CompactReservationRepository() {
+        this(1024);
+    }
+
+    CompactReservationRepository(int expectedReservations) {
+        this.reservations = new LongLongHashMap(expectedReservations);
+        booksByUser.add(null);
+        usersByBook.add(null);
+    }
+
+    @Override
+    public void save(Reservation reservation) {
+        int user = users.intern(reservation.getUserId());
+        int book = books.intern(reservation.getBookId());
+        long key = key(user, book);
+        if (!reservations.containsKey(key)) {
+            IntList userBooks = listFor(booksByUser, user);
+            IntList bookUsers = listFor(usersByBook, book);
+            reservations.put(key, position(userBooks.size(), bookUsers.size()));
+            userBooks.add(book);
+            bookUsers.add(user);
+        }
+    }
+
+    @Override
+    public boolean existsByUserAndBook(String userId, String bookId) {
+        int user = users.lookup(userId);
+        int book = books.lookup(bookId);
+        return user != 0 && book != 0 && reservations.containsKey(key(user, book));
+    }
+
+    @Override
+    public List<Reservation> findByUser(String userId) {
+        int user = users.lookup(userId);
+        IntList bookHandles = user == 0 ? null : booksByUser.get(user);
+        if (bookHandles == null || bookHandles.isEmpty()) {
+            return List.of();
+        }
+        List<Reservation> result = new ArrayList<>(bookHandles.size());
+        for (int i = 0; i < bookHandles.size(); i++) {
+            result.add(new Reservation(userId, books.name(bookHandles.get(i))));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Reservation> findByBook(String bookId) {
+        int book = books.lookup(bookId);
+        IntList userHandles = book == 0 ? null : usersByBook.get(book);
+        if (userHandles == null || userHandles.isEmpty()) {
+            return List.of();
+        }
+        List<Reservation> result = new ArrayList<>(userHandles.size());
+        for (int i = 0; i < userHandles.size(); i++) {
+            result.add(new Reservation(users.name(userHandles.get(i)), bookId));
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        int user = users.lookup(userId);
+        IntList bookHandles = user == 0 ? null : booksByUser.get(user);
+        if (bookHandles == null) {
+            return Stream.empty();
+        }
+        return IntStream.range(0, bookHandles.size())
+                .mapToObj(i -> new Reservation(userId, books.name(bookHandles.get(i))));
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        int book = books.lookup(bookId);
+        IntList userHandles = book == 0 ? null : usersByBook.get(book);
+        if (userHandles == null) {
+            return Stream.empty();
+        }
+        return IntStream.range(0, userHandles.size())
+                .mapToObj(i -> new Reservation(users.name(userHandles.get(i)), bookId));
+    }
+
+    @Override
+    public void delete(String userId, String bookId) {
+        int user = users.lookup(userId);
+        int book = books.lookup(bookId);
+        long at = user == 0 || book == 0 ? LongLongHashMap.MISSING : reservations.remove(key(user, book));
+        if (at == LongLongHashMap.MISSING) {
+            return;
+        }
+        int userIndex = (int) (at >>> 32);
+        int bookIndex = (int) at;
+
+        IntList userBooks = booksByUser.get(user);
+        if (userBooks.swapRemove(userIndex)) {
+            long moved = key(user, userBooks.get(userIndex));
+            reservations.put(moved, position(userIndex, (int) reservations.get(moved)));
+        }
+        IntList bookUsers = usersByBook.get(book);
+        if (bookUsers.swapRemove(bookIndex)) {
+            long moved = key(bookUsers.get(bookIndex), book);
+            reservations.put(moved, position((int) (reservations.get(moved) >>> 32), bookIndex));
+        }
+
+        if (userBooks.isEmpty()) {
+            booksByUser.set(user, null);
+            users.release(user);
+        }
+        if (bookUsers.isEmpty()) {
+            usersByBook.set(book, null);
+            books.release(book);
+        }
+    }
+
+    int size() {
+        return reservations.size();
+    }
+
+    private static long key(int user, int book) {
+        return ((long) user << 32) | (book & 0xffffffffL);
+    }
+
+    private static long position(int userIndex, int bookIndex) {
+        return ((long) userIndex << 32) | (bookIndex & 0xffffffffL);
+    }
+
+    // Interned ids in use, for tests
+    int internedCount() {
+        return users.size() + books.size();
+    }
+
+    private static IntList listFor(List<IntList> index, int handle) {
+        while (index.size() <= handle) {
+            index.add(null);
+        }
+        IntList list = index.get(handle);
+        if (list == null) {
+            list = new IntList(2);
+            index.set(handle, list);
+        }
+        return list;
+    }
+}
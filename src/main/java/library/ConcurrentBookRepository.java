@@ -0,0 +1,44 @@
+package library;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+
+class ConcurrentBookRepository implements IBookRepository {
+    private final Map<String, Book> books = new ConcurrentHashMap<>();
+
+    @Override
+    public Book findById(String id) {
+        return books.get(id);
+    }
+
+    @Override
+    public void save(Book book) {
+        books.put(book.getId(), book);
+    }
+
+    @Override
+    public boolean saveIfVersion(Book book, long expectedVersion) {
+        // compute makes the compare and the put one atomic step
+        boolean[] saved = new boolean[1];
+        books.compute(book.getId(), (id, stored) -> {
+            if (stored != null && stored != book && stored.getVersion() != expectedVersion) {
+                return stored;
+            }
+            book.setVersion((stored == book ? book.getVersion() : expectedVersion) + 1);
+            saved[0] = true;
+            return book;
+        });
+        return saved[0];
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return new ArrayList<>(books.values());
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return books.values().stream();
+    }
+}
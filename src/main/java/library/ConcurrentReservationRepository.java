@@ -0,0 +1,80 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe reservation repository backed by concurrent maps.
+ * Reservations are indexed by user and by book; listings are snapshots
+ * and their order is not defined.
+ */
+class ConcurrentReservationRepository implements IReservationRepository {
+    private final ConcurrentHashMap<String, Map<String, Reservation>> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<String, Reservation>> byBook = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(Reservation reservation) {
+        put(byUser, reservation.getUserId(), reservation.getBookId(), reservation);
+        put(byBook, reservation.getBookId(), reservation.getUserId(), reservation);
+    }
+
+    @Override
+    public boolean existsByUserAndBook(String userId, String bookId) {
+        Map<String, Reservation> books = byUser.get(userId);
+        return books != null && books.containsKey(bookId);
+    }
+
+    @Override
+    public List<Reservation> findByUser(String userId) {
+        return listOf(byUser.get(userId));
+    }
+
+    @Override
+    public List<Reservation> findByBook(String bookId) {
+        return listOf(byBook.get(bookId));
+    }
+
+    // weakly consistent, never throws ConcurrentModificationException
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        Map<String, Reservation> inner = byUser.get(userId);
+        return inner == null ? Stream.empty() : inner.values().stream();
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        Map<String, Reservation> inner = byBook.get(bookId);
+        return inner == null ? Stream.empty() : inner.values().stream();
+    }
+
+    @Override
+    public void delete(String userId, String bookId) {
+        remove(byUser, userId, bookId);
+        remove(byBook, bookId, userId);
+    }
+
+    // compute() keeps creating/removing the inner map atomic with the update
+    private static void put(ConcurrentHashMap<String, Map<String, Reservation>> index,
+                            String key, String innerKey, Reservation r) {
+        index.compute(key, (k, inner) -> {
+            if (inner == null) {
+                inner = new ConcurrentHashMap<>();
+            }
+            inner.put(innerKey, r);
+            return inner;
+        });
+    }
+
+    private static void remove(ConcurrentHashMap<String, Map<String, Reservation>> index,
+                               String key, String innerKey) {
+        index.computeIfPresent(key, (k, inner) -> {
+            inner.remove(innerKey);
+            return inner.isEmpty() ? null : inner;
+        });
+    }
+
+    private static List<Reservation> listOf(Map<String, Reservation> inner) {
+        return inner == null ? List.of() : List.copyOf(inner.values());
+    }
+}
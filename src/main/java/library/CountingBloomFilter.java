@@ -0,0 +1,158 @@
+package library;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counting Bloom filter over (userId, bookId) pairs. Each position is a
+ * 4-bit counter, sixteen to a long, so pairs can be removed again.
+ * mightContain never gives a false negative for a pair that was added and
+ * not removed; a "yes" is wrong with about the configured probability.
+ * A counter that reaches 15 sticks there (it can no longer be trusted to
+ * count down), which only ever costs extra false positives.
+ * Counters are updated with CAS, so the filter is thread-safe.
+ */
+class CountingBloomFilter {
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray words;
+    private final long counters;
+    private final int hashes;
+    private final LongAdder entries = new LongAdder();
+
+    /**
+     * Sized so that expectedEntries pairs give roughly falsePositiveRate.
+     */
+    CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("Expected entries must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long wordCount = Math.max(1, (m + 15) / 16);
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter too large");
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.counters = wordCount * 16;
+        this.hashes = Math.max(1, (int) Math.round((double) counters / expectedEntries * ln2));
+    }
+
+    void add(String userId, String bookId) {
+        long h = hash(userId, bookId);
+        for (int i = 0; i < hashes; i++) {
+            increment(position(h, i));
+        }
+        entries.increment();
+    }
+
+    /**
+     * Only call for a pair that was added - otherwise other pairs may be
+     * forgotten.
+     */
+    void remove(String userId, String bookId) {
+        long h = hash(userId, bookId);
+        for (int i = 0; i < hashes; i++) {
+            decrement(position(h, i));
+        }
+        entries.decrement();
+    }
+
+    boolean mightContain(String userId, String bookId) {
+        long h = hash(userId, bookId);
+        for (int i = 0; i < hashes; i++) {
+            long position = position(h, i);
+            if (count(words.get((int) (position >>> 4)), position) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False positive rate expected for the number of pairs held now:
+     * (1 - e^(-kn/m))^k.
+     */
+    double expectedFalsePositiveRate() {
+        double n = Math.max(0, entries.sum());
+        return Math.pow(1 - Math.exp(-hashes * n / counters), hashes);
+    }
+
+    // Getters
+    long getEntryCount() {
+        return entries.sum();
+    }
+
+    long getCounterCount() {
+        return counters;
+    }
+
+    int getHashCount() {
+        return hashes;
+    }
+
+    private void increment(long position) {
+        int index = (int) (position >>> 4);
+        while (true) {
+            long word = words.get(index);
+            int count = count(word, position);
+            if (count == MAX_COUNT || words.compareAndSet(index, word, word + unit(position))) {
+                return;
+            }
+        }
+    }
+
+    private void decrement(long position) {
+        int index = (int) (position >>> 4);
+        while (true) {
+            long word = words.get(index);
+            int count = count(word, position);
+            if (count == 0 || count == MAX_COUNT || words.compareAndSet(index, word, word - unit(position))) {
+                return;
+            }
+        }
+    }
+
+    private static int count(long word, long position) {
+        return (int) (word >>> shift(position)) & MAX_COUNT;
+    }
+
+    private static long unit(long position) {
+        return 1L << shift(position);
+    }
+
+    private static int shift(long position) {
+        return (int) (position & 15) * 4;
+    }
+
+    // Double hashing: position i = h1 + i * h2 (Kirsch-Mitzenmacher)
+    private long position(long h, int i) {
+        long h2 = (h >>> 32) | 1;
+        return Long.remainderUnsigned(h + i * h2, counters);
+    }
+
+    // FNV-1a over both ids with a separator, then a murmur3 finalizer
+    private static long hash(String userId, String bookId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            h ^= userId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= 0xFFFF;
+        h *= 0x100000001b3L;
+        for (int i = 0; i < bookId.length(); i++) {
+            h ^= bookId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
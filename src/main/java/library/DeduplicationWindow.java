@@ -0,0 +1,218 @@
+package library;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of each request id for a while, so a client retry
+ * gets the original answer instead of being applied a second time.
+ *
+ * Ids live in a ring of SEGMENTS hash maps. New ids go into the head
+ * segment; every window / SEGMENTS the ring moves on and the oldest
+ * segment is cleared as a whole, so there is no per-entry timer and an id
+ * is remembered for between (SEGMENTS - 1) / SEGMENTS of the window and
+ * the full window. The ring also moves on early when the head holds
+ * maxEntries / SEGMENTS ids, which caps memory at about maxEntries ids
+ * (the window then gets shorter under load). A remembered id costs one
+ * map entry holding the kind of operation and its outcome.
+ *
+ * While a request is still running a retry that arrives meanwhile waits
+ * for it. A request that throws or ends in CONFLICT is forgotten, so its
+ * retry runs again instead of replaying a transient failure.
+ */
+class DeduplicationWindow {
+    private static final int SEGMENTS = 8;
+
+    private final long segmentMillis;
+    private final int segmentCapacity;
+    private final LongSupplier clock;
+    private final Segment[] ring = new Segment[SEGMENTS];
+    // inserts hold the read lock so the head can't move under them
+    private final ReadWriteLock rotation = new ReentrantReadWriteLock();
+    private final LongAdder replays = new LongAdder();
+    private volatile int head;
+
+    DeduplicationWindow(long windowMillis, int maxEntries) {
+        this(windowMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    DeduplicationWindow(long windowMillis, int maxEntries, LongSupplier clock) {
+        if (windowMillis < SEGMENTS) {
+            throw new IllegalArgumentException("Window must be at least " + SEGMENTS + " ms");
+        }
+        if (maxEntries < SEGMENTS) {
+            throw new IllegalArgumentException("Max entries must be at least " + SEGMENTS);
+        }
+        this.segmentMillis = windowMillis / SEGMENTS;
+        this.segmentCapacity = maxEntries / SEGMENTS;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        for (int i = 0; i < SEGMENTS; i++) {
+            // all but the head start out already expired
+            ring[i] = new Segment(i == 0 ? now : Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Runs action unless requestId was seen within the window, in which
+     * case the first outcome is returned. Throws IllegalArgumentException
+     * if the id was used for a different operation, user or book.
+     */
+    ReservationOutcome run(String requestId, boolean cancel, String userId, String bookId,
+                           Supplier<ReservationOutcome> action) {
+        while (true) {
+            Entry mine = new Entry(cancel);
+            Segment segment = claim(requestId, mine);
+            if (segment != null) {
+                return execute(requestId, segment, mine, action);
+            }
+            Entry entry = previous(requestId);
+            ReservationOutcome outcome = entry == null ? null : entry.outcome();
+            if (outcome == null) {
+                // the first attempt failed (or just expired) - try ourselves
+                continue;
+            }
+            if (entry.cancel != cancel
+                    || !outcome.getUserId().equals(userId) || !outcome.getBookId().equals(bookId)) {
+                throw new IllegalArgumentException("Request id " + requestId + " was used for another request");
+            }
+            replays.increment();
+            return outcome;
+        }
+    }
+
+    private ReservationOutcome execute(String requestId, Segment segment, Entry mine,
+                                       Supplier<ReservationOutcome> action) {
+        ReservationOutcome outcome;
+        try {
+            outcome = action.get();
+        } catch (Throwable t) {
+            // Errors too, or retries would wait on this entry forever
+            segment.entries.remove(requestId, mine);
+            mine.result.completeExceptionally(t);
+            throw t;
+        }
+        if (outcome.getStatus() == ReservationStatus.CONFLICT) {
+            // a retry may well succeed, so don't pin it to this answer
+            segment.entries.remove(requestId, mine);
+            mine.result.complete(null);
+        } else {
+            mine.result.complete(outcome);
+        }
+        return outcome;
+    }
+
+    // Puts mine in the head unless the id is already live somewhere.
+    // Returns the head segment if we own the request, null otherwise.
+    private Segment claim(String requestId, Entry mine) {
+        rotateIfDue();
+        rotation.readLock().lock();
+        try {
+            long now = clock.getAsLong();
+            int h = head;
+            for (int i = 1; i < SEGMENTS; i++) {
+                Segment older = ring[(h - i + SEGMENTS) % SEGMENTS];
+                if (older.isLive(now) && older.entries.containsKey(requestId)) {
+                    return null;
+                }
+            }
+            Segment segment = ring[h];
+            return segment.entries.putIfAbsent(requestId, mine) == null ? segment : null;
+        } finally {
+            rotation.readLock().unlock();
+        }
+    }
+
+    // The entry for a live id; null if it is gone
+    private Entry previous(String requestId) {
+        long now = clock.getAsLong();
+        for (Segment segment : ring) {
+            if (!segment.isLive(now)) {
+                continue;
+            }
+            Entry entry = segment.entries.get(requestId);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void rotateIfDue() {
+        if (!isDue(ring[head], clock.getAsLong())) {
+            return;
+        }
+        rotation.writeLock().lock();
+        try {
+            long now = clock.getAsLong();
+            if (isDue(ring[head], now)) {
+                int next = (head + 1) % SEGMENTS;
+                ring[next] = new Segment(now);
+                head = next;
+            }
+        } finally {
+            rotation.writeLock().unlock();
+        }
+    }
+
+    private boolean isDue(Segment segment, long now) {
+        return now - segment.start >= segmentMillis || segment.entries.size() >= segmentCapacity;
+    }
+
+    /**
+     * How many requests were answered from the window.
+     */
+    long getReplayCount() {
+        return replays.sum();
+    }
+
+    /**
+     * Request ids currently remembered, including expired ones not yet cleared.
+     */
+    int size() {
+        int n = 0;
+        for (Segment segment : ring) {
+            n += segment.entries.size();
+        }
+        return n;
+    }
+
+    // One request id: which operation it was and, once done, its outcome
+    private static final class Entry {
+        final boolean cancel;
+        final CompletableFuture<ReservationOutcome> result = new CompletableFuture<>();
+
+        Entry(boolean cancel) {
+            this.cancel = cancel;
+        }
+
+        // Waits if the request is still running; null if it failed or conflicted
+        ReservationOutcome outcome() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                return null;
+            }
+        }
+    }
+
+    private final class Segment {
+        final long start;
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        Segment(long start) {
+            this.start = start;
+        }
+
+        boolean isLive(long now) {
+            return start != Long.MIN_VALUE && now - start < SEGMENTS * segmentMillis;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Book repository that survives restarts. Every save is appended to a
+ * memory-mapped log; reads are served from the in-memory map built when
+ * the log is replayed on startup. The log is compacted once it holds
+ * mostly superseded records.
+ */
+class FileBookRepository implements IBookRepository, Closeable {
+    private static final byte PUT = 1;
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+
+    private final Map<String, Book> books = new ConcurrentHashMap<>();
+    private final AppendOnlyLog log;
+
+    FileBookRepository(Path file) throws IOException {
+        this(file, 64);
+    }
+
+    FileBookRepository(Path file, int flushEvery) throws IOException {
+        this.log = new AppendOnlyLog(file, flushEvery);
+        log.replay(this::apply);
+    }
+
+    private void apply(ByteBuffer record) {
+        if (record.get() == PUT) {
+            String id = LogCodec.readString(record);
+            String title = LogCodec.readString(record);
+            int copies = record.getInt();
+            Book existing = books.get(id);
+            if (existing != null) {
+                existing.setCopiesAvailable(copies);
+            } else {
+                books.put(id, new Book(id, title, copies));
+            }
+        }
+    }
+
+    @Override
+    public Book findById(String id) {
+        return books.get(id);
+    }
+
+    @Override
+    public synchronized void save(Book book) {
+        books.put(book.getId(), book);
+        append(book);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void saveAll(Collection<Book> batch) {
+        for (Book book : batch) {
+            books.put(book.getId(), book);
+            append(book);
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized boolean saveIfVersion(Book book, long expectedVersion) {
+        Book stored = books.get(book.getId());
+        if (stored != null && stored != book && stored.getVersion() != expectedVersion) {
+            return false;
+        }
+        // versions are not logged - they only order writers within one process run
+        book.setVersion((stored == book ? book.getVersion() : expectedVersion) + 1);
+        save(book);
+        return true;
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return new ArrayList<>(books.values());
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return books.values().stream();
+    }
+
+    private void append(Book book) {
+        try {
+            log.append(encode(book));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(Book book) {
+        return LogCodec.encode(PUT, new String[]{book.getId(), book.getTitle()},
+                new int[]{book.getCopiesAvailable()});
+    }
+
+    private void compactIfNeeded() {
+        if (log.recordCount() < Math.max(MIN_COMPACT_RECORDS, 2L * books.size())) {
+            return;
+        }
+        List<byte[]> live = new ArrayList<>(books.size());
+        for (Book book : books.values()) {
+            live.add(encode(book));
+        }
+        try {
+            log.rewrite(live);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces buffered writes to disk.
+     */
+    void flush() {
+        log.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,110 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Reservation repository that survives restarts. Saves and deletes are
+ * appended to a memory-mapped log; reads are answered by an in-memory
+ * IndexedReservationRepository rebuilt by replaying the log on startup.
+ * The log is compacted once it holds mostly deleted reservations.
+ */
+class FileReservationRepository implements IReservationRepository, Closeable {
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final int MIN_COMPACT_RECORDS = 10_000;
+
+    private final IndexedReservationRepository index = new IndexedReservationRepository();
+    private final AppendOnlyLog log;
+
+    FileReservationRepository(Path file) throws IOException {
+        this(file, 64);
+    }
+
+    FileReservationRepository(Path file, int flushEvery) throws IOException {
+        this.log = new AppendOnlyLog(file, flushEvery);
+        log.replay(this::apply);
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        String userId = LogCodec.readString(record);
+        String bookId = LogCodec.readString(record);
+        if (type == SAVE) {
+            index.save(new Reservation(userId, bookId));
+        } else if (type == DELETE) {
+            index.delete(userId, bookId);
+        }
+    }
+
+    @Override
+    public synchronized void save(Reservation reservation) {
+        append(LogCodec.encode(SAVE, reservation.getUserId(), reservation.getBookId()));
+        index.save(reservation);
+    }
+
+    @Override
+    public synchronized boolean existsByUserAndBook(String userId, String bookId) {
+        return index.existsByUserAndBook(userId, bookId);
+    }
+
+    @Override
+    public synchronized List<Reservation> findByUser(String userId) {
+        return index.findByUser(userId);
+    }
+
+    @Override
+    public synchronized List<Reservation> findByBook(String bookId) {
+        return index.findByBook(bookId);
+    }
+
+    @Override
+    public synchronized void delete(String userId, String bookId) {
+        if (!index.existsByUserAndBook(userId, bookId)) {
+            return;
+        }
+        append(LogCodec.encode(DELETE, userId, bookId));
+        index.delete(userId, bookId);
+        compactIfNeeded();
+    }
+
+    private void append(byte[] record) {
+        try {
+            log.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        int live = index.size();
+        if (log.recordCount() < Math.max(MIN_COMPACT_RECORDS, 2L * live)) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(live);
+        for (Reservation r : index.findAll()) {
+            records.add(LogCodec.encode(SAVE, r.getUserId(), r.getBookId()));
+        }
+        try {
+            log.rewrite(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces buffered writes to disk.
+     */
+    void flush() {
+        log.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
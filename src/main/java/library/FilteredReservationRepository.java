@@ -0,0 +1,158 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Reservation repository decorator that answers "does this user already
+ * have this book?" from a CountingBloomFilter when it can. A filter miss
+ * is definite, so the backing store is only asked when the filter says
+ * maybe - which, for new reservations, is about the false positive rate.
+ * The filter must see every reservation in the backing store: wrap an
+ * empty store, or seed() it with what is already there.
+ */
+class FilteredReservationRepository implements IReservationRepository {
+    private final IReservationRepository backing;
+    private final CountingBloomFilter filter;
+
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder truePositives = new LongAdder();
+
+    FilteredReservationRepository(IReservationRepository backing, int expectedReservations, double falsePositiveRate) {
+        this.backing = backing;
+        this.filter = new CountingBloomFilter(expectedReservations, falsePositiveRate);
+    }
+
+    /**
+     * Adds reservations already in the backing store to the filter.
+     */
+    void seed(Iterable<Reservation> existing) {
+        for (Reservation r : existing) {
+            filter.add(r.getUserId(), r.getBookId());
+        }
+    }
+
+    @Override
+    public void save(Reservation reservation) {
+        backing.save(reservation);
+        filter.add(reservation.getUserId(), reservation.getBookId());
+    }
+
+    @Override
+    public void saveAll(Collection<Reservation> reservations) {
+        backing.saveAll(reservations);
+        for (Reservation r : reservations) {
+            filter.add(r.getUserId(), r.getBookId());
+        }
+    }
+
+    @Override
+    public boolean existsByUserAndBook(String userId, String bookId) {
+        if (!filter.mightContain(userId, bookId)) {
+            definiteMisses.increment();
+            return false;
+        }
+        boolean exists = backing.existsByUserAndBook(userId, bookId);
+        (exists ? truePositives : falsePositives).increment();
+        return exists;
+    }
+
+    @Override
+    public Set<String> findReservedUsers(String bookId, Collection<String> userIds) {
+        List<String> candidates = new ArrayList<>();
+        for (String userId : userIds) {
+            if (filter.mightContain(userId, bookId)) {
+                candidates.add(userId);
+            } else {
+                definiteMisses.increment();
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<String> reserved = backing.findReservedUsers(bookId, candidates);
+        truePositives.add(reserved.size());
+        falsePositives.add(candidates.size() - reserved.size());
+        return reserved;
+    }
+
+    @Override
+    public List<Reservation> findByUser(String userId) {
+        return backing.findByUser(userId);
+    }
+
+    @Override
+    public List<Reservation> findByBook(String bookId) {
+        return backing.findByBook(bookId);
+    }
+
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        return backing.streamByUser(userId);
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        return backing.streamByBook(bookId);
+    }
+
+    @Override
+    public void delete(String userId, String bookId) {
+        // only take out of the filter what was really there, or other pairs get lost
+        if (existsByUserAndBook(userId, bookId)) {
+            backing.delete(userId, bookId);
+            filter.remove(userId, bookId);
+        }
+    }
+
+    @Override
+    public void deleteAll(String bookId, Collection<String> userIds) {
+        Set<String> reserved = findReservedUsers(bookId, userIds);
+        if (reserved.isEmpty()) {
+            return;
+        }
+        backing.deleteAll(bookId, reserved);
+        for (String userId : reserved) {
+            filter.remove(userId, bookId);
+        }
+    }
+
+    // Statistics
+
+    /**
+     * Lookups answered by the filter alone.
+     */
+    long getDefiniteMissCount() {
+        return definiteMisses.sum();
+    }
+
+    /**
+     * Lookups the filter passed on that the backing store then said no to.
+     */
+    long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Share of lookups for pairs that don't exist which still reached the
+     * backing store.
+     */
+    double getFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long negatives = fp + definiteMisses.sum();
+        return negatives == 0 ? 0.0 : (double) fp / negatives;
+    }
+
+    /**
+     * What the filter's size and load predict getFalsePositiveRate to be.
+     */
+    double getExpectedFalsePositiveRate() {
+        return filter.expectedFalsePositiveRate();
+    }
+
+    long getTruePositiveCount() {
+        return truePositives.sum();
+    }
+}
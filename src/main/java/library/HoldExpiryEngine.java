@@ -0,0 +1,145 @@
+package library;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Gives every reservation that holds a copy a time-to-live. When a hold
+ * expires it is cancelled through the service, which frees the copy or
+ * promotes the next user on the waiting list (who then gets a fresh hold).
+ * Waiting users have no hold until they are promoted.
+ * Deadlines live in a TimerWheel, so there is no thread or scan per hold.
+ *
+ * Holds are kept in memory only. Reservations put back by a journal or
+ * catalog recovery come without them; pass them to armRestored before
+ * taking requests.
+ */
+public class HoldExpiryEngine implements ReservationListener {
+    private final ReservationService service;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final TimerWheel<HoldKey> wheel;
+    // the deadline each hold was last armed with, changed under the book lock
+    private final Map<HoldKey, Long> deadlines = new ConcurrentHashMap<>();
+    private final LongAdder expired = new LongAdder();
+
+    public HoldExpiryEngine(ReservationService service, long ttl, TimeUnit unit) {
+        this(service, unit.toMillis(ttl), 100, System::currentTimeMillis);
+    }
+
+    HoldExpiryEngine(ReservationService service, long ttlMillis, long tickMillis, LongSupplier clock) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        this.service = service;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.wheel = new TimerWheel<>(tickMillis, clock.getAsLong());
+        service.addListener(this);
+    }
+
+    @Override
+    public void onReserved(String userId, String bookId) {
+        arm(new HoldKey(userId, bookId));
+    }
+
+    @Override
+    public void onPromoted(String userId, String bookId) {
+        arm(new HoldKey(userId, bookId));
+    }
+
+    @Override
+    public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+        if (!wasWaiting) {
+            HoldKey hold = new HoldKey(userId, bookId);
+            deadlines.remove(hold);
+            wheel.cancel(hold);
+        }
+    }
+
+    private void arm(HoldKey hold) {
+        long deadline = clock.getAsLong() + ttlMillis;
+        deadlines.put(hold, deadline);
+        wheel.schedule(hold, deadline);
+    }
+
+    /**
+     * Gives each of reservations that holds a copy and has no hold yet a
+     * fresh one, e.g. after recovery. Returns how many were armed.
+     */
+    public int armRestored(Stream<Reservation> reservations) {
+        int armed = 0;
+        Iterator<Reservation> it = reservations.iterator();
+        while (it.hasNext()) {
+            Reservation r = it.next();
+            HoldKey hold = new HoldKey(r.getUserId(), r.getBookId());
+            if (service.waitingPosition(r.getUserId(), r.getBookId()) < 0 && !deadlines.containsKey(hold)) {
+                arm(hold);
+                armed++;
+            }
+        }
+        return armed;
+    }
+
+    /**
+     * When the user's hold on the book runs out (epoch millis), or -1 if
+     * there is no hold.
+     */
+    public long expiresAt(String userId, String bookId) {
+        return wheel.deadlineMillis(new HoldKey(userId, bookId));
+    }
+
+    /**
+     * Expires every hold that is due now. Returns how many were released.
+     */
+    public int expireDue() {
+        long now = clock.getAsLong();
+        int released = 0;
+        for (HoldKey hold : wheel.advanceTo(now)) {
+            // the user may have cancelled and reserved again since the wheel
+            // fired, so only a hold still armed with a past deadline goes
+            ReservationOutcome outcome = service.tryCancelIf(hold.userId(), hold.bookId(), () -> {
+                Long deadline = deadlines.get(hold);
+                return deadline != null && deadline <= now;
+            });
+            if (outcome != null && outcome.isSuccess()) {
+                expired.increment();
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Runs expireDue every tick on a background daemon thread.
+     * Shut the returned scheduler down to stop.
+     */
+    public ScheduledExecutorService start(long tick, TimeUnit unit) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservation-hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireDue, tick, tick, unit);
+        return scheduler;
+    }
+
+    public int getPendingHolds() {
+        return wheel.size();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    private record HoldKey(String userId, String bookId) {
+    }
+}
@@ -1,9 +1,36 @@
 package library;
 
 import java.util.*;
+import java.util.stream.Stream;
 interface IBookRepository {
     Book findById(String id);
     void save(Book book);
     List<Book> findAll();
+
+    /**
+     * Saves book only if the stored book is still at expectedVersion (or
+     * there is none yet) and bumps book's version; returns false and
+     * changes nothing otherwise. If the repository holds this very
+     * instance, changes made through it are already in place, so the save
+     * always succeeds and only the version moves.
+     */
+    boolean saveIfVersion(Book book, long expectedVersion);
+
+    /**
+     * Saves many books at once. Override when the store can do it in one pass.
+     */
+    default void saveAll(Collection<Book> books) {
+        for (Book book : books) {
+            save(book);
+        }
+    }
+
+    /**
+     * Lazily walks the catalog without copying it. Override in stores that
+     * can iterate in place; the default falls back to findAll.
+     */
+    default Stream<Book> streamAll() {
+        return findAll().stream();
+    }
 }
 
@@ -1,11 +1,49 @@
 package library;
 
 import java.util.*;
+import java.util.stream.Stream;
 interface IReservationRepository {
     void save(Reservation reservation);
     boolean existsByUserAndBook(String userId, String bookId);
     List<Reservation> findByUser(String userId);
     List<Reservation> findByBook(String bookId); // NEW METHOD
     void delete(String userId, String bookId);
+
+    // Lazy listings - override in stores that can iterate in place
+
+    default Stream<Reservation> streamByUser(String userId) {
+        return findByUser(userId).stream();
+    }
+
+    default Stream<Reservation> streamByBook(String bookId) {
+        return findByBook(bookId).stream();
+    }
+
+    // Bulk operations - override when the store can do them in one pass
+
+    default void saveAll(Collection<Reservation> reservations) {
+        for (Reservation r : reservations) {
+            save(r);
+        }
+    }
+
+    /**
+     * Which of the given users already hold a reservation for the book.
+     */
+    default Set<String> findReservedUsers(String bookId, Collection<String> userIds) {
+        Set<String> reserved = new HashSet<>();
+        for (String userId : userIds) {
+            if (existsByUserAndBook(userId, bookId)) {
+                reserved.add(userId);
+            }
+        }
+        return reserved;
+    }
+
+    default void deleteAll(String bookId, Collection<String> userIds) {
+        for (String userId : userIds) {
+            delete(userId, bookId);
+        }
+    }
 }
 
@@ -0,0 +1,92 @@
+package library;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Reservation repository with a composite (userId, bookId) index and
+ * per-user / per-book secondary indexes, so existence checks and deletes
+ * don't scan every reservation. Results match MemoryReservationRepository.
+ */
+class IndexedReservationRepository implements IReservationRepository {
+    private final Map<ReservationKey, List<Reservation>> byKey = new HashMap<>();
+    private final Map<String, Set<Reservation>> byUser = new HashMap<>();
+    private final Map<String, Set<Reservation>> byBook = new HashMap<>();
+    private int size;
+
+    @Override
+    public void save(Reservation reservation) {
+        ReservationKey key = new ReservationKey(reservation.getUserId(), reservation.getBookId());
+        byKey.computeIfAbsent(key, k -> new ArrayList<>(1)).add(reservation);
+        byUser.computeIfAbsent(reservation.getUserId(), k -> new LinkedHashSet<>()).add(reservation);
+        byBook.computeIfAbsent(reservation.getBookId(), k -> new LinkedHashSet<>()).add(reservation);
+        size++;
+    }
+
+    @Override
+    public boolean existsByUserAndBook(String userId, String bookId) {
+        return byKey.containsKey(new ReservationKey(userId, bookId));
+    }
+
+    @Override
+    public List<Reservation> findByUser(String userId) {
+        return listOf(byUser.get(userId));
+    }
+
+    @Override
+    public List<Reservation> findByBook(String bookId) {
+        return listOf(byBook.get(bookId));
+    }
+
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        Set<Reservation> set = byUser.get(userId);
+        return set == null ? Stream.empty() : set.stream();
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        Set<Reservation> set = byBook.get(bookId);
+        return set == null ? Stream.empty() : set.stream();
+    }
+
+    @Override
+    public void delete(String userId, String bookId) {
+        List<Reservation> removed = byKey.remove(new ReservationKey(userId, bookId));
+        if (removed == null) {
+            return;
+        }
+        size -= removed.size();
+        for (Reservation r : removed) {
+            unindex(byUser, userId, r);
+            unindex(byBook, bookId, r);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Every reservation, grouped by user in insertion order
+    List<Reservation> findAll() {
+        List<Reservation> all = new ArrayList<>();
+        for (Set<Reservation> set : byUser.values()) {
+            all.addAll(set);
+        }
+        return all;
+    }
+
+    private static void unindex(Map<String, Set<Reservation>> index, String key, Reservation r) {
+        Set<Reservation> set = index.get(key);
+        if (set != null && set.remove(r) && set.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static List<Reservation> listOf(Set<Reservation> set) {
+        return set == null ? List.of() : List.copyOf(set);
+    }
+
+    private record ReservationKey(String userId, String bookId) {
+    }
+}
@@ -0,0 +1,61 @@
+package library;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Not thread-safe.
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return values[index];
+    }
+
+    /**
+     * Removes the value at index by moving the last value into its place,
+     * so the order of the rest is not kept. Returns true if a value was
+     * moved, in which case get(index) is now that value.
+     */
+    boolean swapRemove(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        values[index] = values[--size];
+        return index < size;
+    }
+
+    int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException(0);
+        }
+        return values[--size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
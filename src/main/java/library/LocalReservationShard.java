@@ -0,0 +1,57 @@
+package library;
+
+import java.util.List;
+
+/**
+ * Shard backed by a ReservationService in the same process.
+ */
+public class LocalReservationShard implements ReservationShard {
+    private final String shardId;
+    private final IBookRepository bookRepo;
+    private final ReservationService service;
+
+    public LocalReservationShard(String shardId, IBookRepository bookRepo, IReservationRepository reservationRepo) {
+        this.shardId = shardId;
+        this.bookRepo = bookRepo;
+        this.service = new ReservationService(bookRepo, reservationRepo);
+    }
+
+    @Override
+    public String getShardId() {
+        return shardId;
+    }
+
+    public ReservationService getService() {
+        return service;
+    }
+
+    @Override
+    public void saveBook(Book book) {
+        bookRepo.save(book);
+    }
+
+    @Override
+    public Book findBook(String bookId) {
+        return bookRepo.findById(bookId);
+    }
+
+    @Override
+    public ReservationOutcome reserve(String userId, String bookId, boolean priority) {
+        return priority ? service.tryReservePriority(userId, bookId) : service.tryReserve(userId, bookId);
+    }
+
+    @Override
+    public ReservationOutcome cancel(String userId, String bookId) {
+        return service.tryCancel(userId, bookId);
+    }
+
+    @Override
+    public List<Reservation> listReservations(String userId) {
+        return service.listReservations(userId);
+    }
+
+    @Override
+    public List<Reservation> listReservationsForBook(String bookId) {
+        return service.listReservationsForBook(bookId);
+    }
+}
@@ -0,0 +1,49 @@
+package library;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small helpers for the binary record layouts: a type byte followed by
+ * length-prefixed UTF-8 strings and ints.
+ */
+final class LogCodec {
+
+    private LogCodec() {
+    }
+
+    static byte[] encode(byte type, String... fields) {
+        return encode(type, fields, null);
+    }
+
+    static byte[] encode(byte type, String[] fields, int[] numbers) {
+        byte[][] bytes = new byte[fields.length][];
+        int size = 1;
+        for (int i = 0; i < fields.length; i++) {
+            bytes[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+            size += 4 + bytes[i].length;
+        }
+        if (numbers != null) {
+            size += 4 * numbers.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(type);
+        for (byte[] b : bytes) {
+            out.putInt(b.length);
+            out.put(b);
+        }
+        if (numbers != null) {
+            for (int n : numbers) {
+                out.putInt(n);
+            }
+        }
+        return out.array();
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        byte[] b = new byte[length];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
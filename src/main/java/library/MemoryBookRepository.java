@@ -1,6 +1,7 @@
 package library;
 
 import java.util.*;
+import java.util.stream.Stream;
 class MemoryBookRepository implements IBookRepository {
     private final Map<String, Book> books = new HashMap<>();
 
@@ -14,9 +15,25 @@ class MemoryBookRepository implements IBookRepository {
         books.put(book.getId(), book);
     }
 
+    @Override
+    public boolean saveIfVersion(Book book, long expectedVersion) {
+        Book stored = books.get(book.getId());
+        if (stored != null && stored != book && stored.getVersion() != expectedVersion) {
+            return false;
+        }
+        book.setVersion((stored == book ? book.getVersion() : expectedVersion) + 1);
+        books.put(book.getId(), book);
+        return true;
+    }
+
     @Override
     public List<Book> findAll() {
         return new ArrayList<>(books.values());
     }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return books.values().stream();
+    }
 }
 
@@ -1,6 +1,7 @@
 package library;
 
 import java.util.*;
+import java.util.stream.Stream;
 class MemoryReservationRepository implements IReservationRepository {
     private final List<Reservation> reservations = new ArrayList<>();
 
@@ -30,10 +31,44 @@ class MemoryReservationRepository implements IReservationRepository {
                 .toList();
     }
 
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        return reservations.stream().filter(r -> r.getUserId().equals(userId));
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        return reservations.stream().filter(r -> r.getBookId().equals(bookId));
+    }
+
     @Override
     public void delete(String userId, String bookId) {
         reservations.removeIf(r ->
                 r.getUserId().equals(userId) && r.getBookId().equals(bookId));
     }
+
+    @Override
+    public void saveAll(Collection<Reservation> batch) {
+        reservations.addAll(batch);
+    }
+
+    @Override
+    public Set<String> findReservedUsers(String bookId, Collection<String> userIds) {
+        Set<String> wanted = new HashSet<>(userIds);
+        Set<String> reserved = new HashSet<>();
+        for (Reservation r : reservations) {
+            if (r.getBookId().equals(bookId) && wanted.contains(r.getUserId())) {
+                reserved.add(r.getUserId());
+            }
+        }
+        return reserved;
+    }
+
+    @Override
+    public void deleteAll(String bookId, Collection<String> userIds) {
+        Set<String> users = new HashSet<>(userIds);
+        reservations.removeIf(r ->
+                r.getBookId().equals(bookId) && users.contains(r.getUserId()));
+    }
 }
 
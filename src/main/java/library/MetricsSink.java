@@ -0,0 +1,8 @@
+package library;
+
+/**
+ * Where ReservationMetrics snapshots are sent (log, JMX, a metrics backend...).
+ */
+public interface MetricsSink {
+    void publish(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,80 @@
+package library;
+
+import java.util.*;
+
+/**
+ * Point-in-time copy of ReservationMetrics.
+ */
+public class MetricsSnapshot {
+    private final long[] operations;
+    private final long[][] latencyCounts;
+    private final long[] latencySums;
+    private final long[] latencyMax;
+    private final long[] rejections;
+    private final long waitingUsers;
+    private final Map<String, Long> waitingByBook;
+    private final Map<String, Long> gauges;
+
+    MetricsSnapshot(long[] operations, long[][] latencyCounts, long[] latencySums, long[] latencyMax,
+                    long[] rejections, long waitingUsers, Map<String, Long> waitingByBook,
+                    Map<String, Long> gauges) {
+        this.operations = operations;
+        this.latencyCounts = latencyCounts;
+        this.latencySums = latencySums;
+        this.latencyMax = latencyMax;
+        this.rejections = rejections;
+        this.waitingUsers = waitingUsers;
+        this.waitingByBook = Collections.unmodifiableMap(waitingByBook);
+        this.gauges = Collections.unmodifiableMap(gauges);
+    }
+
+    public long getCount(ReservationOperation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    public long getRejections(ReservationStatus reason) {
+        return rejections[reason.ordinal()];
+    }
+
+    public long getLatencyPercentileNanos(ReservationOperation operation, double percentile) {
+        return LatencyHistogram.valueAtQuantile(latencyCounts[operation.ordinal()], percentile / 100.0);
+    }
+
+    public double getLatencyMeanNanos(ReservationOperation operation) {
+        long count = operations[operation.ordinal()];
+        return count == 0 ? 0.0 : (double) latencySums[operation.ordinal()] / count;
+    }
+
+    public long getLatencyMaxNanos(ReservationOperation operation) {
+        return latencyMax[operation.ordinal()];
+    }
+
+    /**
+     * Users on any waiting list.
+     */
+    public long getWaitingUsers() {
+        return waitingUsers;
+    }
+
+    /**
+     * Waiting list depth per book, for books with anyone waiting.
+     */
+    public Map<String, Long> getWaitingByBook() {
+        return waitingByBook;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MetricsSnapshot{");
+        for (ReservationOperation op : ReservationOperation.values()) {
+            sb.append(op).append('=').append(getCount(op))
+                    .append(" p99=").append(getLatencyPercentileNanos(op, 99)).append("ns, ");
+        }
+        sb.append("waiting=").append(waitingUsers).append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package library;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Hands out a lazy listing one page at a time, in key order. Nothing is
+ * held open between pages: each page streams the listing again and takes
+ * the pageSize smallest keys past the last one handed out, so changes
+ * between pages can't break the cursor - entries added past it still
+ * show up and removed ones don't. Only the current page is kept in
+ * memory, at the cost of one pass over the listing per page.
+ */
+public class PageCursor<T> {
+    private final Supplier<Stream<T>> source;
+    private final Comparator<T> order;
+    private final int pageSize;
+    private T last;
+
+    PageCursor(Supplier<Stream<T>> source, Function<T, String> key, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.source = source;
+        this.order = Comparator.comparing(key);
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasNext() {
+        try (Stream<T> rest = remaining()) {
+            return rest.findAny().isPresent();
+        }
+    }
+
+    /**
+     * Up to pageSize further items; empty once the listing is exhausted.
+     */
+    public List<T> nextPage() {
+        List<T> page;
+        try (Stream<T> rest = remaining()) {
+            page = rest.sorted(order).limit(pageSize).toList();
+        }
+        if (!page.isEmpty()) {
+            last = page.get(page.size() - 1);
+        }
+        return page;
+    }
+
+    private Stream<T> remaining() {
+        T after = last;
+        return after == null ? source.get() : source.get().filter(t -> order.compare(t, after) > 0);
+    }
+}
@@ -0,0 +1,344 @@
+package library;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable hash array mapped trie. put and remove return a new map that
+ * shares every untouched node with the old one, so a change copies one
+ * path of at most seven small arrays. Old versions stay valid and can be
+ * read from any thread without locking. Null keys and values are not allowed.
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        return root == null ? null : (V) root.find(hash(key), key, 0);
+    }
+
+    boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    PersistentHashMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(value);
+        boolean[] added = new boolean[1];
+        Node start = root == null ? BitmapNode.EMPTY : root;
+        Node next = start.put(hash(key), key, value, 0, added);
+        if (next == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(next, added[0] ? size + 1 : size);
+    }
+
+    PersistentHashMap<K, V> remove(K key) {
+        if (root == null) {
+            return this;
+        }
+        Node next = root.remove(hash(key), key, 0);
+        if (next == root) {
+            return this;
+        }
+        return next == null ? empty() : new PersistentHashMap<>(next, size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<K, V> action) {
+        Iterator<Object[]> it = new EntryIterator(root);
+        while (it.hasNext()) {
+            Object[] pair = it.next();
+            action.accept((K) pair[0], (V) pair[1]);
+        }
+    }
+
+    /**
+     * Lazy stream over the values, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    Stream<V> values() {
+        Spliterator<Object[]> split = Spliterators.spliterator(new EntryIterator(root), size,
+                Spliterator.SIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).map(pair -> (V) pair[1]);
+    }
+
+    List<V> valueList() {
+        List<V> list = new ArrayList<>(size);
+        forEach((k, v) -> list.add(v));
+        return list;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    // array holds key/value pairs; in a BitmapNode a null key means the
+    // value slot holds a child node
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int hash, Object key, int shift);
+
+        abstract Node put(int hash, Object key, Object value, int shift, boolean[] added);
+
+        // null once the node is empty
+        abstract Node remove(int hash, Object key, int shift);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(hash, key, shift + BITS);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift, boolean[] added) {
+            int bit = bitFor(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] next = new Object[array.length + 2];
+                System.arraycopy(array, 0, next, 0, i);
+                next[i] = key;
+                next[i + 1] = value;
+                System.arraycopy(array, i, next, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, next);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(hash, key, value, shift + BITS, added);
+                return child == v ? this : with(i + 1, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i + 1, k, value);
+            }
+            added[0] = true;
+            return with(i + 1, null, split(shift + BITS, k, v, hash, key, value));
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node next = child.remove(hash, key, shift + BITS);
+                if (next == child) {
+                    return this;
+                }
+                if (next != null) {
+                    return with(i + 1, null, next);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] next = new Object[array.length - 2];
+            System.arraycopy(array, 0, next, 0, i);
+            System.arraycopy(array, i + 2, next, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, next);
+        }
+
+        // copy with the pair at valueIndex - 1 replaced
+        private Node with(int valueIndex, Object key, Object value) {
+            Object[] next = array.clone();
+            next[valueIndex - 1] = key;
+            next[valueIndex] = value;
+            return new BitmapNode(bitmap, next);
+        }
+
+        // Node holding two pairs that clashed at the level above
+        private static Node split(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = hash(k1);
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.put(h1, k1, v1, shift, ignored).put(h2, k2, v2, shift, ignored);
+        }
+    }
+
+    // Keys whose full hashes are equal, compared one by one
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // push this node one level down next to the new key
+                Node parent = new BitmapNode(bitFor(this.hash, shift), new Object[]{null, this});
+                return parent.put(hash, key, value, shift, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] next = array.clone();
+                next[i + 1] = value;
+                return new CollisionNode(hash, next);
+            }
+            added[0] = true;
+            Object[] next = Arrays.copyOf(array, array.length + 2);
+            next[array.length] = key;
+            next[array.length + 1] = value;
+            return new CollisionNode(hash, next);
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] next = new Object[array.length - 2];
+            System.arraycopy(array, 0, next, 0, i);
+            System.arraycopy(array, i + 2, next, i, array.length - i - 2);
+            return new CollisionNode(hash, next);
+        }
+    }
+
+    // Depth-first walk with an explicit stack; returns {key, value} pairs
+    private static final class EntryIterator implements Iterator<Object[]> {
+        private final Object[][] arrays = new Object[10][];
+        private final int[] positions = new int[10];
+        private int depth = -1;
+        private Object[] next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root);
+            }
+            advance();
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.array;
+            positions[depth] = 0;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int i = positions[depth];
+                if (i >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (array[i] == null) {
+                    push((Node) array[i + 1]);
+                } else {
+                    next = new Object[]{array[i], array[i + 1]};
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Object[] pair = next;
+            advance();
+            return pair;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package library;
+
+/**
+ * One change published by ReservationEventBus. Events live in the bus's
+ * ring buffer and are reused once every subscriber has seen them, so a
+ * handler must copy out whatever it wants to keep.
+ */
+public final class ReservationEvent {
+
+    public enum Type {
+        RESERVED,
+        WAITLISTED,
+        CANCELLED,
+        /** a waiting user cancelled before getting a copy */
+        LEFT_WAITING_LIST,
+        /** a waiting user was handed a copy freed by a cancellation */
+        PROMOTED,
+        COPIES_CHANGED
+    }
+
+    private Type type;
+    private String userId;
+    private String bookId;
+    private int copiesAvailable;
+
+    void set(Type type, String userId, String bookId, int copiesAvailable) {
+        this.type = type;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.copiesAvailable = copiesAvailable;
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * null for COPIES_CHANGED.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Only set for COPIES_CHANGED.
+     */
+    public int getCopiesAvailable() {
+        return copiesAvailable;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + (userId == null ? "" : userId + " ") + bookId
+                + (type == Type.COPIES_CHANGED ? " copies=" + copiesAvailable : "");
+    }
+}
@@ -0,0 +1,284 @@
+package library;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stream of reservation changes, Disruptor style. Register the
+ * bus as a listener on a ReservationService; every change is written into
+ * a preallocated ring buffer with one CAS and no allocation or signalling,
+ * so the service's hot path only pays a few nanoseconds.
+ *
+ * Each subscription runs on its own daemon thread and reads the ring in
+ * batches, at its own pace. When the slowest subscriber falls a whole ring
+ * behind, the Backpressure policy decides: DROP discards the new event
+ * (counted in getDroppedCount) so reservations never wait, BLOCK makes
+ * the publishing thread wait for room so nothing is lost. With BLOCK a
+ * handler must not call back into the service, or it may wait on itself.
+ * A handler that throws an Error ends its subscription, which then stops
+ * holding publishers back (see getFailure).
+ */
+public class ReservationEventBus implements ReservationListener, AutoCloseable {
+
+    public enum Backpressure {
+        DROP,
+        BLOCK
+    }
+
+    private final ReservationEvent[] ring;
+    private final int mask;
+    private final int indexShift;
+    private final Backpressure backpressure;
+    // round number of the last publish to each slot, so readers know it's complete
+    private final AtomicIntegerArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final LongAdder dropped = new LongAdder();
+    private volatile long gatingCache = -1;
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    public ReservationEventBus(int capacity, Backpressure backpressure) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.ring = new ReservationEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new ReservationEvent();
+        }
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.backpressure = backpressure;
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Starts delivering events published from now on to handler.
+     */
+    public synchronized Subscription subscribe(String name, ReservationEventHandler handler) {
+        Subscription subscription = new Subscription(name, handler, claimed.get());
+        Subscription[] next = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        next[subscriptions.length] = subscription;
+        subscriptions = next;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscriptions = Arrays.stream(subscriptions).filter(s -> s != subscription).toArray(Subscription[]::new);
+    }
+
+    @Override
+    public void onReserved(String userId, String bookId) {
+        publish(ReservationEvent.Type.RESERVED, userId, bookId, 0);
+    }
+
+    @Override
+    public void onWaitlisted(String userId, String bookId) {
+        publish(ReservationEvent.Type.WAITLISTED, userId, bookId, 0);
+    }
+
+    @Override
+    public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+        publish(wasWaiting ? ReservationEvent.Type.LEFT_WAITING_LIST : ReservationEvent.Type.CANCELLED,
+                userId, bookId, 0);
+    }
+
+    @Override
+    public void onPromoted(String userId, String bookId) {
+        publish(ReservationEvent.Type.PROMOTED, userId, bookId, 0);
+    }
+
+    @Override
+    public void onCopiesChanged(String bookId, int copiesAvailable) {
+        publish(ReservationEvent.Type.COPIES_CHANGED, null, bookId, copiesAvailable);
+    }
+
+    /**
+     * Claims the next slot, fills it in and marks it published.
+     * Returns false if the event was dropped.
+     */
+    boolean publish(ReservationEvent.Type type, String userId, String bookId, int copiesAvailable) {
+        long sequence;
+        while (true) {
+            long current = claimed.get();
+            sequence = current + 1;
+            long wrapPoint = sequence - ring.length;
+            if (wrapPoint > gatingCache) {
+                long slowest = slowestSequence(current);
+                gatingCache = slowest;
+                if (wrapPoint > slowest) {
+                    if (backpressure == Backpressure.DROP) {
+                        dropped.increment();
+                        return false;
+                    }
+                    LockSupport.parkNanos(1_000);
+                    continue;
+                }
+            }
+            if (claimed.compareAndSet(current, sequence)) {
+                break;
+            }
+        }
+        int index = (int) sequence & mask;
+        ring[index].set(type, userId, bookId, copiesAvailable);
+        published.lazySet(index, (int) (sequence >>> indexShift));
+        return true;
+    }
+
+    // With nobody subscribed the ring never fills up
+    private long slowestSequence(long current) {
+        long slowest = current;
+        for (Subscription s : subscriptions) {
+            slowest = Math.min(slowest, s.sequence.get());
+        }
+        return slowest;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Sequence of the last event published (or being published).
+     */
+    public long getCursor() {
+        return claimed.get();
+    }
+
+    /**
+     * Stops every subscription after it has handled what was already
+     * published. If the calling thread is interrupted it stops waiting and
+     * keeps its interrupt flag; the subscriptions still finish on their own.
+     */
+    @Override
+    public void close() {
+        for (Subscription s : subscriptions) {
+            s.close();
+        }
+    }
+
+    /**
+     * One subscriber's thread and position in the ring.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final ReservationEventHandler handler;
+        private final AtomicLong sequence;
+        private final Thread thread;
+        private final LongAdder failures = new LongAdder();
+        private volatile boolean running = true;
+        private volatile Throwable failure;
+
+        private Subscription(String name, ReservationEventHandler handler, long start) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new AtomicLong(start);
+            this.thread = new Thread(this::run, "reservation-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            try {
+                consume();
+            } catch (Throwable t) {
+                // stop gating publishers, or BLOCK would wait for us forever
+                failure = t;
+                unsubscribe(this);
+                throw t;
+            }
+        }
+
+        private void consume() {
+            int idle = 0;
+            while (true) {
+                long next = sequence.get() + 1;
+                long available = next - 1;
+                long end = claimed.get();
+                while (available < end && isPublished(available + 1)) {
+                    available++;
+                }
+                if (available >= next) {
+                    for (long s = next; s <= available; s++) {
+                        try {
+                            handler.onEvent(ring[(int) s & mask], s, s == available);
+                        } catch (Exception e) {
+                            // one bad event must not stop the stream
+                            failures.increment();
+                        }
+                    }
+                    sequence.lazySet(available);
+                    idle = 0;
+                } else if (!running) {
+                    return;
+                } else {
+                    idle = idle(idle);
+                }
+            }
+        }
+
+        // spin, then yield, then sleep briefly - publishers never have to wake us
+        private int idle(int idle) {
+            if (idle < 100) {
+                Thread.onSpinWait();
+            } else if (idle < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(100_000);
+            }
+            return idle + 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sequence of the last event this subscriber finished handling.
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Events published but not yet handled by this subscriber.
+         */
+        public long getLag() {
+            return Math.max(0, claimed.get() - sequence.get());
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        /**
+         * The Error that ended this subscription, or null while it is healthy.
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * Handles what is already published, then stops. An interrupt
+         * stops the wait, as for ReservationEventBus.close.
+         */
+        @Override
+        public void close() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            unsubscribe(this);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package library;
+
+/**
+ * Subscriber of a ReservationEventBus. Called on the subscription's own
+ * thread, one event at a time in publish order. endOfBatch marks the last
+ * event that was available when the batch started - a good moment to
+ * flush whatever was buffered.
+ */
+@FunctionalInterface
+public interface ReservationEventHandler {
+    void onEvent(ReservationEvent event, long sequence, boolean endOfBatch) throws Exception;
+}
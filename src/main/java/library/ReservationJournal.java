@@ -0,0 +1,367 @@
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-ahead journal for a ReservationService. Every successful reserve,
+ * waitlist and cancel is appended as one logical record while the book's
+ * lock is held, and the call does not return until its record is on disk.
+ * Callers that finish together share one fsync (group commit): whoever gets
+ * to flush first forces everything appended so far and the rest find their
+ * record already durable.
+ *
+ * checkpoint() writes a snapshot of books, reservations and waiting lists
+ * and drops the journal records it covers. On startup the snapshot is loaded and the
+ * journal after it is replayed through the service, which rebuilds both
+ * repositories and the waiting lists. Book changes outside the service
+ * must go through saveBook so they are journaled too.
+ */
+class ReservationJournal implements ReservationListener, Closeable {
+    private static final byte HEADER = 1;
+    private static final byte BOOK = 2;
+    private static final byte RESERVE = 3;
+    private static final byte WAITLIST = 4;
+    private static final byte CANCEL = 5;
+    private static final byte RESERVATION = 6;
+    private static final byte WAITING = 7;
+    private static final byte WAITING_CLOCK = 8;
+
+    private final ReservationService service;
+    private final IBookRepository bookRepo;
+    private final IReservationRepository reservationRepo;
+    private final int checkpointEvery;
+    private final AppendOnlyLog snapshot;
+    private final AppendOnlyLog journal;
+
+    private final Object commitLock = new Object();
+    private final Object checkpointLock = new Object();
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+    private final LongAdder commits = new LongAdder();
+    private volatile long appended;
+    private volatile long durable;
+    // guarded by commitLock
+    private boolean fsyncing;
+    private int generation;
+
+    ReservationJournal(Path dir, ReservationService service,
+                       IBookRepository bookRepo, IReservationRepository reservationRepo) throws IOException {
+        this(dir, service, bookRepo, reservationRepo, 100_000);
+    }
+
+    /**
+     * service must be built on bookRepo and reservationRepo, which should
+     * start out empty - they are filled from the files in dir. Register the
+     * journal before any other listener so replay doesn't reach them.
+     * A checkpoint is taken automatically every checkpointEvery records
+     * (0 turns that off).
+     */
+    ReservationJournal(Path dir, ReservationService service, IBookRepository bookRepo,
+                       IReservationRepository reservationRepo, int checkpointEvery) throws IOException {
+        this.service = service;
+        this.bookRepo = bookRepo;
+        this.reservationRepo = reservationRepo;
+        this.checkpointEvery = checkpointEvery;
+        Files.createDirectories(dir);
+        // fsyncs are done by sync(), never by the log itself
+        this.snapshot = new AppendOnlyLog(dir.resolve("snapshot.log"), Integer.MAX_VALUE);
+        this.journal = new AppendOnlyLog(dir.resolve("journal.log"), Integer.MAX_VALUE);
+        recover();
+        service.addListener(this);
+    }
+
+    private void recover() throws IOException {
+        Map<String, List<WaitingScheduler.Waiter>> waiting = new LinkedHashMap<>();
+        Map<String, Long> clocks = new HashMap<>();
+        List<Reservation> reservations = new ArrayList<>();
+        snapshot.replay(record -> {
+            switch (record.get()) {
+                case HEADER -> generation = record.getInt();
+                case BOOK -> bookRepo.save(readBook(record));
+                case RESERVATION -> reservations.add(
+                        new Reservation(LogCodec.readString(record), LogCodec.readString(record)));
+                case WAITING -> {
+                    List<WaitingScheduler.Waiter> list =
+                            waiting.computeIfAbsent(LogCodec.readString(record), k -> new ArrayList<>());
+                    list.add(readWaiter(record, list.size()));
+                }
+                case WAITING_CLOCK -> clocks.put(LogCodec.readString(record), record.getLong());
+                default -> throw new IllegalStateException("Corrupt snapshot record");
+            }
+        });
+        if (!reservations.isEmpty()) {
+            reservationRepo.saveAll(reservations);
+        }
+        waiting.forEach(service::restoreWaiters);
+        // snapshots written before the clock was recorded fall back to the newest ticket
+        clocks.forEach(service::restoreNextWaitingTicket);
+
+        // Records before the snapshot's generation were already folded into
+        // it (we crashed between writing the snapshot and trimming the
+        // journal); a later generation means the snapshot never got written
+        boolean[] current = {false};
+        int[] latest = {generation};
+        journal.replay(record -> {
+            byte type = record.get();
+            if (type == HEADER) {
+                int g = record.getInt();
+                current[0] = g >= generation;
+                latest[0] = Math.max(latest[0], g);
+            } else if (current[0]) {
+                redo(type, record);
+            }
+        });
+        if (!current[0]) {
+            journal.rewrite(List.of(header(generation)));
+        }
+        generation = latest[0];
+    }
+
+    // Replays one journal record through the service, which isn't journaling yet
+    private void redo(byte type, ByteBuffer record) {
+        if (type == BOOK) {
+            Book book = readBook(record);
+            Book existing = bookRepo.findById(book.getId());
+            if (existing != null) {
+                existing.setCopiesAvailable(book.getCopiesAvailable());
+                bookRepo.save(existing);
+            } else {
+                bookRepo.save(book);
+            }
+            return;
+        }
+        String userId = LogCodec.readString(record);
+        String bookId = LogCodec.readString(record);
+        switch (type) {
+            case RESERVE -> service.tryReserve(userId, bookId);
+            case WAITLIST -> service.tryReserve(userId, bookId, readTier(record));
+            case CANCEL -> service.tryCancel(userId, bookId);
+            default -> throw new IllegalStateException("Corrupt journal record");
+        }
+    }
+
+    @Override
+    public void onReserved(String userId, String bookId) {
+        append(LogCodec.encode(RESERVE, userId, bookId));
+    }
+
+    @Override
+    public void onWaitlisted(String userId, String bookId, ReservationTier tier) {
+        append(LogCodec.encode(WAITLIST, new String[]{userId, bookId}, new int[]{tier.ordinal()}));
+    }
+
+    // Records written before tiers existed are priority waiters
+    private static ReservationTier readTier(ByteBuffer record) {
+        return record.hasRemaining() ? ReservationTier.values()[record.getInt()] : ReservationTier.STAFF;
+    }
+
+    private static WaitingScheduler.Waiter readWaiter(ByteBuffer record, int index) {
+        String userId = LogCodec.readString(record);
+        if (!record.hasRemaining()) {
+            return new WaitingScheduler.Waiter(userId, ReservationTier.STAFF, index);
+        }
+        ReservationTier tier = ReservationTier.values()[record.getInt()];
+        return new WaitingScheduler.Waiter(userId, tier, record.getLong());
+    }
+
+    @Override
+    public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+        // who gets promoted follows from the state, so promotions aren't logged
+        append(LogCodec.encode(CANCEL, userId, bookId));
+    }
+
+    /**
+     * Fired after the book lock is released - wait for our record here so
+     * other books aren't held up by the fsync.
+     */
+    @Override
+    public void onOperation(ReservationOperation operation, long nanos) {
+        if (operation == ReservationOperation.LIST) {
+            return;
+        }
+        sync();
+        if (checkpointEvery > 0 && journal.recordCount() >= checkpointEvery
+                && checkpointing.compareAndSet(false, true)) {
+            try {
+                checkpoint();
+            } finally {
+                checkpointing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Adds or updates a book and journals it.
+     */
+    synchronized void saveBook(Book book) {
+        bookRepo.save(book);
+        append(encodeBook(book));
+        sync();
+    }
+
+    private synchronized void append(byte[] record) {
+        try {
+            journal.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appended++;
+    }
+
+    /**
+     * Blocks until everything journaled so far is on disk.
+     */
+    void sync() {
+        long target = appended;
+        if (durable >= target) {
+            return;
+        }
+        long upTo;
+        boolean interrupted = false;
+        synchronized (commitLock) {
+            // wait out the fsync in progress - it may cover us - without
+            // holding the lock, so callers it does cover can leave
+            while (fsyncing && durable < target) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durable >= target) {
+                return;
+            }
+            fsyncing = true;
+            upTo = appended;
+        }
+        boolean done = false;
+        try {
+            fsync();
+            done = true;
+        } finally {
+            synchronized (commitLock) {
+                fsyncing = false;
+                if (done) {
+                    durable = upTo;
+                    commits.increment();
+                }
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    // The one place the journal goes to disk; tests slow it down
+    void fsync() {
+        journal.flush();
+    }
+
+    /**
+     * Snapshots the current state and drops the journal records it covers.
+     * Reservations on every book pause while the state is copied in memory
+     * and a generation marker is appended; the snapshot is written and the
+     * journal trimmed after they resume, with new records kept past the
+     * marker.
+     */
+    void checkpoint() {
+        synchronized (checkpointLock) {
+            List<byte[]> records = new ArrayList<>();
+            long[] marker = new long[1];
+            int next = generation + 1;
+            service.runExclusive(() -> {
+                synchronized (this) {
+                    records.add(header(next));
+                    List<Book> books = bookRepo.findAll();
+                    for (Book book : books) {
+                        records.add(encodeBook(book));
+                    }
+                    for (Book book : books) {
+                        for (Reservation r : reservationRepo.findByBook(book.getId())) {
+                            records.add(LogCodec.encode(RESERVATION, r.getUserId(), r.getBookId()));
+                        }
+                        for (WaitingScheduler.Waiter w : service.waiters(book.getId())) {
+                            // the ticket keeps the waiter's age across restarts
+                            records.add(LogCodec.encode(WAITING, new String[]{book.getId(), w.userId()},
+                                    new int[]{w.tier().ordinal(), (int) (w.ticket() >>> 32), (int) w.ticket()}));
+                        }
+                        long clock = service.nextWaitingTicket(book.getId());
+                        if (clock >= 0) {
+                            records.add(LogCodec.encode(WAITING_CLOCK, new String[]{book.getId()},
+                                    new int[]{(int) (clock >>> 32), (int) clock}));
+                        }
+                    }
+                    // records after this belong to the new generation
+                    append(header(next));
+                    marker[0] = journal.recordCount();
+                }
+            });
+            try {
+                // snapshot first - if we crash before the journal is trimmed,
+                // recovery skips the records before the marker
+                snapshot.rewrite(records);
+                synchronized (this) {
+                    List<byte[]> tail = new ArrayList<>();
+                    tail.add(header(next));
+                    long[] index = {0};
+                    journal.replay(record -> {
+                        if (index[0]++ >= marker[0]) {
+                            byte[] copy = new byte[record.remaining()];
+                            record.get(copy);
+                            tail.add(copy);
+                        }
+                    });
+                    journal.rewrite(tail);
+                    generation = next;
+                    durable = appended;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Getters
+
+    long getRecordCount() {
+        return journal.recordCount();
+    }
+
+    /**
+     * Number of fsyncs so far - each one commits a whole group of records.
+     */
+    long getCommitCount() {
+        return commits.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.removeListener(this);
+        sync();
+        journal.close();
+        snapshot.close();
+    }
+
+    private static byte[] header(int generation) {
+        return LogCodec.encode(HEADER, new String[0], new int[]{generation});
+    }
+
+    private static byte[] encodeBook(Book book) {
+        return LogCodec.encode(BOOK, new String[]{book.getId(), book.getTitle()},
+                new int[]{book.getCopiesAvailable()});
+    }
+
+    private static Book readBook(ByteBuffer record) {
+        String id = LogCodec.readString(record);
+        String title = LogCodec.readString(record);
+        return new Book(id, title, record.getInt());
+    }
+}
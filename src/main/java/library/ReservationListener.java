@@ -0,0 +1,49 @@
+package library;
+
+/**
+ * Callbacks fired by ReservationService. State changes are reported while
+ * the book's lock is held, so events for one book arrive in order.
+ * Implementations must be fast and must not call back into the service.
+ * Arguments are the service's own references - nothing is allocated per event.
+ */
+public interface ReservationListener {
+
+    default void onReserved(String userId, String bookId) {
+    }
+
+    default void onWaitlisted(String userId, String bookId) {
+    }
+
+    /**
+     * onWaitlisted with the tier the user waits in; forwards to the
+     * two-argument version unless overridden.
+     */
+    default void onWaitlisted(String userId, String bookId, ReservationTier tier) {
+        onWaitlisted(userId, bookId);
+    }
+
+    /**
+     * wasWaiting is true if the user was still on the waiting list rather
+     * than holding a copy.
+     */
+    default void onCancelled(String userId, String bookId, boolean wasWaiting) {
+    }
+
+    /**
+     * A waiting user was handed a copy freed by a cancellation.
+     */
+    default void onPromoted(String userId, String bookId) {
+    }
+
+    /**
+     * A reservation or cancellation took or returned a copy of the book.
+     */
+    default void onCopiesChanged(String bookId, int copiesAvailable) {
+    }
+
+    default void onRejected(String userId, String bookId, ReservationStatus reason) {
+    }
+
+    default void onOperation(ReservationOperation operation, long nanos) {
+    }
+}
@@ -0,0 +1,152 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Low-overhead metrics for ReservationService: per-operation counts and
+ * latency histograms, rejections by reason and waiting-list depth.
+ * Register with service.addListener(metrics). All counters are LongAdders,
+ * so recording from many threads does not contend.
+ */
+public class ReservationMetrics implements ReservationListener {
+    private final LongAdder[] operations = adders(ReservationOperation.values().length);
+    private final LatencyHistogram[] latencies = new LatencyHistogram[ReservationOperation.values().length];
+    private final LongAdder[] rejections = adders(ReservationStatus.values().length);
+    private final Map<String, LongAdder> waitingByBook = new ConcurrentHashMap<>();
+    private final LongAdder waitingUsers = new LongAdder();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    public ReservationMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // Recording
+
+    @Override
+    public void onOperation(ReservationOperation operation, long nanos) {
+        operations[operation.ordinal()].increment();
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onRejected(String userId, String bookId, ReservationStatus reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    @Override
+    public void onWaitlisted(String userId, String bookId) {
+        waitingByBook.computeIfAbsent(bookId, k -> new LongAdder()).increment();
+        waitingUsers.increment();
+    }
+
+    @Override
+    public void onPromoted(String userId, String bookId) {
+        leftWaitingList(bookId);
+    }
+
+    @Override
+    public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+        if (wasWaiting) {
+            leftWaitingList(bookId);
+        }
+    }
+
+    private void leftWaitingList(String bookId) {
+        LongAdder depth = waitingByBook.get(bookId);
+        if (depth != null) {
+            depth.decrement();
+        }
+        waitingUsers.decrement();
+    }
+
+    /**
+     * Adds a named gauge that is read each time a snapshot is taken.
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    // Reporting
+
+    public MetricsSnapshot snapshot() {
+        int ops = operations.length;
+        long[] counts = new long[ops];
+        long[][] latencyCounts = new long[ops][];
+        long[] latencySums = new long[ops];
+        long[] latencyMax = new long[ops];
+        for (int i = 0; i < ops; i++) {
+            counts[i] = operations[i].sum();
+            latencyCounts[i] = latencies[i].counts();
+            latencySums[i] = latencies[i].sum();
+            latencyMax[i] = latencies[i].max();
+        }
+        long[] rejected = new long[rejections.length];
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = rejections[i].sum();
+        }
+        Map<String, Long> depths = new HashMap<>();
+        waitingByBook.forEach((bookId, depth) -> {
+            long d = depth.sum();
+            if (d > 0) {
+                depths.put(bookId, d);
+            }
+        });
+        Map<String, Long> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsLong()));
+        return new MetricsSnapshot(counts, latencyCounts, latencySums, latencyMax, rejected,
+                waitingUsers.sum(), depths, gaugeValues);
+    }
+
+    public void addSink(MetricsSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Takes one snapshot and hands it to every sink.
+     */
+    public void publish() {
+        if (sinks.isEmpty()) {
+            return;
+        }
+        MetricsSnapshot snapshot = snapshot();
+        for (MetricsSink sink : sinks) {
+            sink.publish(snapshot);
+        }
+    }
+
+    /**
+     * Publishes to the sinks every period on a background daemon thread.
+     * Shut the returned scheduler down to stop.
+     */
+    public ScheduledExecutorService startReporting(long period, TimeUnit unit) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservation-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::publish, period, period, unit);
+        return scheduler;
+    }
+}
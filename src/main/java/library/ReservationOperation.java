@@ -0,0 +1,14 @@
+package library;
+
+/**
+ * Service operations that are timed and counted.
+ */
+public enum ReservationOperation {
+    RESERVE,
+    RESERVE_PRIORITY,
+    CANCEL,
+    // one reserveAll or cancelAll call, however many requests it carries
+    RESERVE_BATCH,
+    CANCEL_BATCH,
+    LIST
+}
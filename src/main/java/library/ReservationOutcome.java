@@ -0,0 +1,39 @@
+package library;
+
+/**
+ * What happened to one reserve or cancel request.
+ */
+public class ReservationOutcome {
+    private final String userId;
+    private final String bookId;
+    private final ReservationStatus status;
+
+    // Constructor
+    public ReservationOutcome(String userId, String bookId, ReservationStatus status) {
+        this.userId = userId;
+        this.bookId = bookId;
+        this.status = status;
+    }
+
+    // Getters
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public ReservationStatus getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status.isSuccess();
+    }
+
+    @Override
+    public String toString() {
+        return userId + "/" + bookId + ": " + status;
+    }
+}
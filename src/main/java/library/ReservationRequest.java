@@ -0,0 +1,46 @@
+package library;
+
+/**
+ * One (user, book) pair for the batch reserve/cancel API.
+ */
+public class ReservationRequest {
+    private final String userId;
+    private final String bookId;
+    private final ReservationTier tier;
+
+    // Constructors
+    public ReservationRequest(String userId, String bookId) {
+        this(userId, bookId, false);
+    }
+
+    // A priority request waits in the STAFF tier
+    public ReservationRequest(String userId, String bookId, boolean priority) {
+        this(userId, bookId, priority ? ReservationTier.STAFF : null);
+    }
+
+    public ReservationRequest(String userId, String bookId, ReservationTier tier) {
+        this.userId = userId;
+        this.bookId = bookId;
+        this.tier = tier;
+    }
+
+    // Getters
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public boolean isPriority() {
+        return tier != null;
+    }
+
+    /**
+     * Tier to wait in if no copy is free, or null if the user may not wait.
+     */
+    public ReservationTier getTier() {
+        return tier;
+    }
+}
@@ -1,20 +1,70 @@
 package library;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 
 public class ReservationService {
+    // retries of a conditional book save that lost to another instance
+    private static final int MAX_ATTEMPTS = 10;
+
+    private enum Commit {
+        SAVED,
+        // the latest saved count can't cover the copies taken
+        SOLD_OUT,
+        GAVE_UP
+    }
+    private static final long BACKOFF_NANOS = 1_000;
+    private static final long DEDUP_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int DEDUP_MAX_ENTRIES = 1_000_000;
 
     private final IBookRepository bookRepo;
     private final IReservationRepository reservationRepo;
-    private final Map<String, Queue<String>> waitingLists = new HashMap<>();
+    private final Map<String, WaitingScheduler> waitingLists = new ConcurrentHashMap<>();
+    private final BookLockStripes bookLocks;
+    private volatile ReservationListener[] listeners = new ReservationListener[0];
+    private volatile DeduplicationWindow dedup = new DeduplicationWindow(DEDUP_WINDOW_MILLIS, DEDUP_MAX_ENTRIES);
 
     public ReservationService(IBookRepository bookRepo, IReservationRepository reservationRepo) {
+        this(bookRepo, reservationRepo, 64);
+    }
+
+    /**
+     * Operations on the same book are serialized by one of lockStripes locks,
+     * operations on different books run in parallel. Use the Concurrent*
+     * repositories when calling the service from several threads.
+     * Several instances may share one book repository: copy counts are
+     * saved with saveIfVersion and retried with backoff when another
+     * instance got there first.
+     */
+    public ReservationService(IBookRepository bookRepo, IReservationRepository reservationRepo, int lockStripes) {
         this.bookRepo = bookRepo;
         this.reservationRepo = reservationRepo;
+        this.bookLocks = new BookLockStripes(lockStripes);
+    }
+
+    /**
+     * Registers a listener for reservation events and operation timings.
+     */
+    public synchronized void addListener(ReservationListener listener) {
+        ReservationListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    public synchronized void removeListener(ReservationListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(ReservationListener[]::new);
     }
 
     /**
@@ -23,40 +73,151 @@ public class ReservationService {
      * Throws IllegalStateException if no copies available or user already reserved.
      */
     public void reserve(String userId, String bookId) {
-        reserve(userId, bookId, false);
+        throwIfFailed(reserveLocked(userId, bookId, null));
     }
 
+    /**
+     * Same as reserve, but a staff member waits for a copy instead of
+     * being turned away.
+     */
     public void reservePriority(String userId, String bookId) {
-        reserve(userId, bookId, true);
+        throwIfFailed(reserveLocked(userId, bookId, ReservationTier.STAFF));
+    }
+
+    /**
+     * Reserve a copy, or wait in the given tier if none is free.
+     * Freed copies go to the tier whose longest waiter scores highest on
+     * weight x time waited, see ReservationTier.
+     */
+    public void reserve(String userId, String bookId, ReservationTier tier) {
+        throwIfFailed(reserveLocked(userId, bookId, tier));
     }
 
+    /**
+     * Same as reserve, but reports failures in the outcome instead of throwing.
+     */
+    public ReservationOutcome tryReserve(String userId, String bookId) {
+        return new ReservationOutcome(userId, bookId, reserveLocked(userId, bookId, null));
+    }
 
-    private void reserve(String userId, String bookId, boolean isPriority) {
+    public ReservationOutcome tryReservePriority(String userId, String bookId) {
+        return new ReservationOutcome(userId, bookId, reserveLocked(userId, bookId, ReservationTier.STAFF));
+    }
+
+    public ReservationOutcome tryReserve(String userId, String bookId, ReservationTier tier) {
+        return new ReservationOutcome(userId, bookId, reserveLocked(userId, bookId, tier));
+    }
+
+    // tier is null for a user who may not wait
+    private ReservationStatus reserveLocked(String userId, String bookId, ReservationTier tier) {
+        long start = startTimer();
+        ReservationStatus status;
+        ReentrantLock lock = bookLocks.lockFor(bookId);
+        lock.lock();
+        try {
+            status = attemptReserve(userId, bookId, tier);
+            notifyReserve(userId, bookId, status, tier);
+        } finally {
+            lock.unlock();
+        }
+        stopTimer(tier != null ? ReservationOperation.RESERVE_PRIORITY : ReservationOperation.RESERVE, start);
+        return status;
+    }
+
+    private ReservationStatus attemptReserve(String userId, String bookId, ReservationTier tier) {
         Book book = bookRepo.findById(bookId);
 
         if (book == null) {
-            throw new IllegalArgumentException("Book not found");
+            return ReservationStatus.BOOK_NOT_FOUND;
         }
 
         if (reservationRepo.existsByUserAndBook(userId, bookId)) {
-            throw new IllegalStateException("The user already reserved this book");
-        }
-
-        if (book.getCopiesAvailable() > 0) {
-            // Normal reservation - decrease copies
-            Reservation reservation = new Reservation(userId, bookId);
-            reservationRepo.save(reservation);
-            book.setCopiesAvailable(book.getCopiesAvailable() - 1);
-            bookRepo.save(book);
-        } else if (isPriority) {
-            // Priority user - add to waiting list
-            waitingLists.computeIfAbsent(bookId, k -> new LinkedList<>()).add(userId);
-            // Still create reservation for tracking
-            Reservation reservation = new Reservation(userId, bookId);
-            reservationRepo.save(reservation);
-        } else {
-            throw new IllegalStateException("No copies available");
+            return ReservationStatus.ALREADY_RESERVED;
+        }
+
+        long version = book.getVersion();
+        ReservationStatus status = allocate(book, userId, tier);
+        if (status == ReservationStatus.RESERVED) {
+            int committed = commitTaken(book, version, 1);
+            if (committed < 0) {
+                return ReservationStatus.CONFLICT;
+            }
+            if (committed == 0) {
+                // another instance took the last copy first
+                status = waitOrReject(bookId, userId, tier);
+            }
+        }
+        if (status.isSuccess()) {
+            // Waiting users still get a reservation for tracking
+            reservationRepo.save(new Reservation(userId, bookId));
+        }
+        return status;
+    }
+
+    // Takes a copy, or puts a user with a tier on the waiting list. The copy
+    // count still has to be committed. Caller holds the book lock.
+    private ReservationStatus allocate(Book book, String userId, ReservationTier tier) {
+        if (book.tryAcquireCopy()) {
+            // Normal reservation - copy taken atomically
+            return ReservationStatus.RESERVED;
         }
+        return waitOrReject(book.getId(), userId, tier);
+    }
+
+    // No copy for this user: wait in their tier if they have one
+    private ReservationStatus waitOrReject(String bookId, String userId, ReservationTier tier) {
+        if (tier == null) {
+            return ReservationStatus.NO_COPIES_AVAILABLE;
+        }
+        waitingLists.computeIfAbsent(bookId, k -> new WaitingScheduler()).enqueue(userId, tier);
+        return ReservationStatus.WAITLISTED;
+    }
+
+    /**
+     * Reserve with a client-chosen request id. If the same id was used
+     * within the deduplication window (see setDeduplicationWindow), the
+     * first outcome is returned without touching the repositories, so a
+     * client can safely retry after a timeout. A retry that arrives while
+     * the first attempt is still running waits for it.
+     * Throws IllegalArgumentException if the id was used for another user or book.
+     */
+    public ReservationOutcome reserveIdempotent(String requestId, String userId, String bookId) {
+        return dedup.run(requestId, false, userId, bookId, () -> tryReserve(userId, bookId));
+    }
+
+    /**
+     * Same as reserveIdempotent, waiting in tier if no copy is free.
+     */
+    public ReservationOutcome reserveIdempotent(String requestId, String userId, String bookId, ReservationTier tier) {
+        return dedup.run(requestId, false, userId, bookId, () -> tryReserve(userId, bookId, tier));
+    }
+
+    /**
+     * Cancel with a client-chosen request id, see reserveIdempotent. A
+     * retried cancel gets CANCELLED again instead of NO_RESERVATION.
+     */
+    public ReservationOutcome cancelIdempotent(String requestId, String userId, String bookId) {
+        return dedup.run(requestId, true, userId, bookId, () -> tryCancel(userId, bookId));
+    }
+
+    /**
+     * How long request ids are remembered, and at most how many. When more
+     * ids arrive the window gets shorter rather than memory growing.
+     * Defaults to 5 minutes and a million ids. Ids seen so far are forgotten.
+     */
+    public void setDeduplicationWindow(long window, TimeUnit unit, int maxEntries) {
+        dedup = new DeduplicationWindow(unit.toMillis(window), maxEntries);
+    }
+
+    void setDeduplicationWindow(DeduplicationWindow window) {
+        dedup = window;
+    }
+
+    /**
+     * Number of idempotent requests answered from the deduplication window.
+     */
+    public long getReplayedRequestCount() {
+        return dedup.getReplayCount();
     }
 
     /**
@@ -64,57 +225,500 @@ public class ReservationService {
      * Throws IllegalArgumentException if no such reservation exists.
      */
     public void cancel(String userId, String bookId) {
+        throwIfFailed(cancelLocked(userId, bookId, () -> true));
+    }
+
+    /**
+     * Same as cancel, but reports failures in the outcome instead of throwing.
+     */
+    public ReservationOutcome tryCancel(String userId, String bookId) {
+        return new ReservationOutcome(userId, bookId, cancelLocked(userId, bookId, () -> true));
+    }
+
+    /**
+     * Cancels only if condition still holds once the book is locked, for
+     * callers that decided to cancel before they could lock it. Returns
+     * null if it didn't.
+     */
+    ReservationOutcome tryCancelIf(String userId, String bookId, BooleanSupplier condition) {
+        ReservationStatus status = cancelLocked(userId, bookId, condition);
+        return status == null ? null : new ReservationOutcome(userId, bookId, status);
+    }
+
+    // null if condition was false under the lock
+    private ReservationStatus cancelLocked(String userId, String bookId, BooleanSupplier condition) {
+        long start = startTimer();
+        ReservationStatus status;
+        ReentrantLock lock = bookLocks.lockFor(bookId);
+        lock.lock();
+        try {
+            if (!condition.getAsBoolean()) {
+                return null;
+            }
+            status = attemptCancel(userId, bookId);
+            if (!status.isSuccess()) {
+                notifyRejected(userId, bookId, status);
+            }
+        } finally {
+            lock.unlock();
+        }
+        stopTimer(ReservationOperation.CANCEL, start);
+        return status;
+    }
+
+    private ReservationStatus attemptCancel(String userId, String bookId) {
         if (!reservationRepo.existsByUserAndBook(userId, bookId)) {
-            throw new IllegalArgumentException("No reservations found");
+            return ReservationStatus.NO_RESERVATION;
         }
 
         // Get book BEFORE deleting reservation to check current state
         Book book = bookRepo.findById(bookId);
         if (book == null) {
-            throw new IllegalArgumentException("Book not found");
+            return ReservationStatus.BOOK_NOT_FOUND;
+        }
+
+        long version = book.getVersion();
+        if (release(book, userId)) {
+            returnCopies(book, version, 1);
+        }
+        // only once the copy is back, so a failing save leaves the reservation in place
+        reservationRepo.delete(userId, bookId);
+        return ReservationStatus.CANCELLED;
+    }
+
+    // A waiting user just leaves the queue; a holder frees their copy.
+    // Returns true if the copy count changed. Caller holds the book lock.
+    private boolean release(Book book, String userId) {
+        WaitingScheduler waitingList = waitingLists.get(book.getId());
+        if (waitingList != null && waitingList.remove(userId)) {
+            if (waitingList.isEmpty()) {
+                waitingLists.remove(book.getId());
+            }
+            for (ReservationListener l : listeners) {
+                l.onCancelled(userId, book.getId(), true);
+            }
+            return false;
         }
+        for (ReservationListener l : listeners) {
+            l.onCancelled(userId, book.getId(), false);
+        }
+        return releaseOrPromote(book);
+    }
+
+    // Hands a freed copy to the next waiting user, or puts it back on the shelf.
+    // Returns true if the copy count changed. Caller holds the book lock.
+    private boolean releaseOrPromote(Book book) {
+        String bookId = book.getId();
 
         // Store whether book had available copies before cancellation
         boolean hadAvailableCopies = book.getCopiesAvailable() > 0;
-
-        reservationRepo.delete(userId, bookId);
+        boolean copiesChanged;
 
         // Check if there are users waiting for this book
-        Queue<String> waitingList = waitingLists.get(bookId);
+        WaitingScheduler waitingList = waitingLists.get(bookId);
         if (waitingList != null && !waitingList.isEmpty() && !hadAvailableCopies) {
-            // Book had 0 copies and has waiting users - assign to first waiting user
+            // Book had 0 copies and has waiting users - assign to the next by tier and age
             String nextUserId = waitingList.poll();
             // Don't create new reservation - waiting user already has one
             // Just remove them from waiting list (already done by poll())
-            System.out.println("Assigned book to waiting user: " + nextUserId);
+            for (ReservationListener l : listeners) {
+                l.onPromoted(nextUserId, bookId);
+            }
+            copiesChanged = false;
         } else {
             // Either no waiting list OR book had available copies - increase copies
-            book.setCopiesAvailable(book.getCopiesAvailable() + 1);
-            bookRepo.save(book);
+            book.releaseCopy();
+            copiesChanged = true;
         }
 
         // Clean up empty waiting lists
         if (waitingList != null && waitingList.isEmpty()) {
             waitingLists.remove(bookId);
         }
+        return copiesChanged;
+    }
+
+    // Saves a book whose copy count moved by delta since it was read at version.
+    // If another instance saved it in between, delta is applied again to a
+    // fresh read, with backoff. Taking copies gives up after MAX_ATTEMPTS;
+    // returning them can't legitimately fail, so it retries until it wins.
+    private Commit commitCopies(Book book, long version, int delta) {
+        for (int attempt = 1; ; attempt++) {
+            if (bookRepo.saveIfVersion(book, version)) {
+                notifyCopies(book);
+                return Commit.SAVED;
+            }
+            if (delta < 0 && attempt >= MAX_ATTEMPTS) {
+                return Commit.GAVE_UP;
+            }
+            backoff(attempt);
+            // only repositories that hand out copies get here, so this
+            // book is ours alone and can be set directly
+            book = bookRepo.findById(book.getId());
+            if (book == null || book.getCopiesAvailable() + delta < 0) {
+                return Commit.SOLD_OUT;
+            }
+            version = book.getVersion();
+            book.setCopiesAvailable(book.getCopiesAvailable() + delta);
+        }
     }
+
+    // Commits taking copies from book, as many of them as the latest saved
+    // count still covers. Returns how many were committed, or -1 if other
+    // instances kept winning.
+    private int commitTaken(Book book, long version, int taken) {
+        while (taken > 0) {
+            switch (commitCopies(book, version, -taken)) {
+                case SAVED -> {
+                    return taken;
+                }
+                case GAVE_UP -> {
+                    return -1;
+                }
+                case SOLD_OUT -> {
+                    book = bookRepo.findById(book.getId());
+                    if (book == null) {
+                        return 0;
+                    }
+                    taken = Math.min(taken, book.getCopiesAvailable());
+                    version = book.getVersion();
+                    book.setCopiesAvailable(book.getCopiesAvailable() - taken);
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Never gives up; only a deleted book (nothing to return to) ends it early
+    private void returnCopies(Book book, long version, int copies) {
+        commitCopies(book, version, copies);
+    }
+
+    // Exponential backoff with full jitter, so competing instances spread out
+    private static void backoff(int attempt) {
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(BACKOFF_NANOS << Math.min(attempt, 10)));
+    }
+
+    private void notifyReserve(String userId, String bookId, ReservationStatus status, ReservationTier tier) {
+        for (ReservationListener l : listeners) {
+            switch (status) {
+                case RESERVED -> l.onReserved(userId, bookId);
+                case WAITLISTED -> l.onWaitlisted(userId, bookId, tier);
+                default -> l.onRejected(userId, bookId, status);
+            }
+        }
+    }
+
+    private void notifyCopies(Book book) {
+        for (ReservationListener l : listeners) {
+            l.onCopiesChanged(book.getId(), book.getCopiesAvailable());
+        }
+    }
+
+    private void notifyRejected(String userId, String bookId, ReservationStatus status) {
+        for (ReservationListener l : listeners) {
+            l.onRejected(userId, bookId, status);
+        }
+    }
+
+    // nanoTime is only read when someone is listening
+    private long startTimer() {
+        return listeners.length == 0 ? 0 : System.nanoTime();
+    }
+
+    private void stopTimer(ReservationOperation operation, long start) {
+        ReservationListener[] current = listeners;
+        if (current.length == 0 || start == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        for (ReservationListener l : current) {
+            l.onOperation(operation, nanos);
+        }
+    }
+
+    static void throwIfFailed(ReservationStatus status) {
+        switch (status) {
+            case BOOK_NOT_FOUND, NO_RESERVATION -> throw new IllegalArgumentException(status.getMessage());
+            case ALREADY_RESERVED, NO_COPIES_AVAILABLE, CONFLICT -> throw new IllegalStateException(status.getMessage());
+            default -> {
+                // success
+            }
+        }
+    }
+
+    /**
+     * Reserve many (user, book) pairs in one go.
+     * Requests are grouped by book so each book is loaded, checked for
+     * duplicates and saved once. Never throws for a single bad request -
+     * the outcome list has one entry per request, in the same order.
+     * Listeners see the whole call as one RESERVE_BATCH operation, fired
+     * once every book is unlocked.
+     */
+    public List<ReservationOutcome> reserveAll(List<ReservationRequest> requests) {
+        long start = startTimer();
+        ReservationOutcome[] outcomes = new ReservationOutcome[requests.size()];
+
+        for (Map.Entry<String, List<Integer>> group : groupByBook(requests).entrySet()) {
+            String bookId = group.getKey();
+            List<Integer> indexes = group.getValue();
+
+            ReentrantLock lock = bookLocks.lockFor(bookId);
+            lock.lock();
+            try {
+                Book book = bookRepo.findById(bookId);
+                long version = book == null ? 0 : book.getVersion();
+                Set<String> reserved = book == null
+                        ? Set.of()
+                        : new HashSet<>(reservationRepo.findReservedUsers(bookId, usersOf(requests, indexes)));
+                ReservationStatus[] statuses = new ReservationStatus[indexes.size()];
+                int taken = 0;
+
+                for (int n = 0; n < statuses.length; n++) {
+                    ReservationRequest request = requests.get(indexes.get(n));
+                    if (book == null) {
+                        statuses[n] = ReservationStatus.BOOK_NOT_FOUND;
+                    } else if (!reserved.add(request.getUserId())) {
+                        statuses[n] = ReservationStatus.ALREADY_RESERVED;
+                    } else {
+                        statuses[n] = allocate(book, request.getUserId(), request.getTier());
+                        if (!statuses[n].isSuccess()) {
+                            reserved.remove(request.getUserId());
+                        }
+                        if (statuses[n] == ReservationStatus.RESERVED) {
+                            taken++;
+                        }
+                    }
+                }
+
+                // if another instance took some copies first, the last
+                // requests go without; if it kept winning, none are kept
+                int committed = taken == 0 ? 0 : commitTaken(book, version, taken);
+                int kept = 0;
+                List<Reservation> toSave = new ArrayList<>();
+                for (int n = 0; n < statuses.length; n++) {
+                    ReservationRequest request = requests.get(indexes.get(n));
+                    if (statuses[n] == ReservationStatus.RESERVED) {
+                        if (committed < 0) {
+                            statuses[n] = ReservationStatus.CONFLICT;
+                        } else if (kept++ >= committed) {
+                            statuses[n] = waitOrReject(bookId, request.getUserId(), request.getTier());
+                        }
+                    }
+                    if (statuses[n].isSuccess()) {
+                        toSave.add(new Reservation(request.getUserId(), bookId));
+                    }
+                    outcomes[indexes.get(n)] = new ReservationOutcome(request.getUserId(), bookId, statuses[n]);
+                }
+                if (!toSave.isEmpty()) {
+                    reservationRepo.saveAll(toSave);
+                }
+                for (int n = 0; n < statuses.length; n++) {
+                    ReservationRequest request = requests.get(indexes.get(n));
+                    notifyReserve(request.getUserId(), bookId, statuses[n], request.getTier());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        stopTimer(ReservationOperation.RESERVE_BATCH, start);
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Cancel many (user, book) pairs in one go, see reserveAll. Fires one
+     * CANCEL_BATCH operation.
+     */
+    public List<ReservationOutcome> cancelAll(List<ReservationRequest> requests) {
+        long start = startTimer();
+        ReservationOutcome[] outcomes = new ReservationOutcome[requests.size()];
+
+        for (Map.Entry<String, List<Integer>> group : groupByBook(requests).entrySet()) {
+            String bookId = group.getKey();
+            List<Integer> indexes = group.getValue();
+
+            ReentrantLock lock = bookLocks.lockFor(bookId);
+            lock.lock();
+            try {
+                Set<String> reserved = new HashSet<>(
+                        reservationRepo.findReservedUsers(bookId, usersOf(requests, indexes)));
+                Book book = reserved.isEmpty() ? null : bookRepo.findById(bookId);
+                long version = book == null ? 0 : book.getVersion();
+                List<String> toDelete = new ArrayList<>();
+                int returned = 0;
+
+                for (int i : indexes) {
+                    ReservationRequest request = requests.get(i);
+                    ReservationStatus status;
+                    if (!reserved.remove(request.getUserId())) {
+                        status = ReservationStatus.NO_RESERVATION;
+                    } else if (book == null) {
+                        status = ReservationStatus.BOOK_NOT_FOUND;
+                    } else {
+                        toDelete.add(request.getUserId());
+                        if (release(book, request.getUserId())) {
+                            returned++;
+                        }
+                        status = ReservationStatus.CANCELLED;
+                    }
+                    if (!status.isSuccess()) {
+                        notifyRejected(request.getUserId(), bookId, status);
+                    }
+                    outcomes[i] = new ReservationOutcome(request.getUserId(), bookId, status);
+                }
+
+                // copies first, so a failing save leaves the reservations in place
+                if (returned > 0) {
+                    returnCopies(book, version, returned);
+                }
+                if (!toDelete.isEmpty()) {
+                    reservationRepo.deleteAll(bookId, toDelete);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        stopTimer(ReservationOperation.CANCEL_BATCH, start);
+        return Arrays.asList(outcomes);
+    }
+
+    private static Map<String, List<Integer>> groupByBook(List<ReservationRequest> requests) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            groups.computeIfAbsent(requests.get(i).getBookId(), k -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    private static List<String> usersOf(List<ReservationRequest> requests, List<Integer> indexes) {
+        List<String> users = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            users.add(requests.get(i).getUserId());
+        }
+        return users;
+    }
+
+    /**
+     * 0-based place of the user within their tier of the book's waiting
+     * list, or -1 if not waiting.
+     */
+    public int waitingPosition(String userId, String bookId) {
+        WaitingScheduler waitingList = waitingLists.get(bookId);
+        return waitingList == null ? -1 : waitingList.position(userId);
+    }
+
+    /**
+     * Number of users waiting for a book.
+     */
+    public int waitingListLength(String bookId) {
+        WaitingScheduler waitingList = waitingLists.get(bookId);
+        return waitingList == null ? 0 : waitingList.size();
+    }
+
     /**
      * List all active reservations for a given user.
      */
     public List<Reservation> listReservations(String userId) {
-        // TODO: Implement using TDD
-        return reservationRepo.findByUser(userId);
-
+        long start = startTimer();
+        List<Reservation> reservations = reservationRepo.findByUser(userId);
+        stopTimer(ReservationOperation.LIST, start);
+        return reservations;
     }
 
     /**
      * list all reservations for a book.
      */
     public List<Reservation> listReservationsForBook(String bookId) {
-        // TODO: Implement using TDD
-        return reservationRepo.findByBook(bookId);
+        long start = startTimer();
+        List<Reservation> reservations = reservationRepo.findByBook(bookId);
+        stopTimer(ReservationOperation.LIST, start);
+        return reservations;
+    }
+
+    /**
+     * Lazy version of listReservations - nothing is copied up front.
+     * Don't reserve or cancel for this user while consuming the stream
+     * unless the repository is one of the concurrent ones.
+     */
+    public Stream<Reservation> streamReservations(String userId) {
+        return reservationRepo.streamByUser(userId);
+    }
+
+    /**
+     * Lazy version of listReservationsForBook, see streamReservations.
+     */
+    public Stream<Reservation> streamReservationsForBook(String bookId) {
+        return reservationRepo.streamByBook(bookId);
+    }
+
+    /**
+     * A user's reservations, pageSize at a time in book id order.
+     * Reserving or cancelling between pages is fine.
+     */
+    public PageCursor<Reservation> pageReservations(String userId, int pageSize) {
+        return new PageCursor<>(() -> reservationRepo.streamByUser(userId), Reservation::getBookId, pageSize);
+    }
+
+    /**
+     * A book's reservations, pageSize at a time in user id order.
+     */
+    public PageCursor<Reservation> pageReservationsForBook(String bookId, int pageSize) {
+        return new PageCursor<>(() -> reservationRepo.streamByBook(bookId), Reservation::getUserId, pageSize);
     }
 
+    // Persistence hooks for ReservationJournal
+
+    /**
+     * Runs action with every book locked, so it sees a state no
+     * reservation or cancellation is halfway through.
+     */
+    void runExclusive(Runnable action) {
+        bookLocks.lockAll();
+        try {
+            action.run();
+        } finally {
+            bookLocks.unlockAll();
+        }
+    }
+
+    List<String> waitingUsers(String bookId) {
+        return waiters(bookId).stream().map(WaitingScheduler.Waiter::userId).toList();
+    }
+
+    List<WaitingScheduler.Waiter> waiters(String bookId) {
+        WaitingScheduler waitingList = waitingLists.get(bookId);
+        return waitingList == null ? List.of() : waitingList.toList();
+    }
+
+    /**
+     * Puts back a waiting list read from a snapshot. The users' reservations
+     * must be restored separately.
+     */
+    void restoreWaiters(String bookId, List<WaitingScheduler.Waiter> waiters) {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        WaitingScheduler waitingList = waitingLists.computeIfAbsent(bookId, k -> new WaitingScheduler());
+        for (WaitingScheduler.Waiter waiter : waiters) {
+            waitingList.restore(waiter);
+        }
+    }
+
+    /**
+     * Ticket counter of the book's waiting list, -1 if nobody waits.
+     */
+    long nextWaitingTicket(String bookId) {
+        WaitingScheduler waitingList = waitingLists.get(bookId);
+        return waitingList == null ? -1 : waitingList.nextTicket();
+    }
+
+    /**
+     * Puts back a counter from nextWaitingTicket, before or after the
+     * book's waiters.
+     */
+    void restoreNextWaitingTicket(String bookId, long ticket) {
+        waitingLists.computeIfAbsent(bookId, k -> new WaitingScheduler()).restoreNextTicket(ticket);
+    }
 
 }
 
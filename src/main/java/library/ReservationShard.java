@@ -0,0 +1,28 @@
+package library;
+
+import java.util.List;
+
+/**
+ * One partition of the books, as seen by ShardedReservationService.
+ * Implement this over a network transport for remote shards;
+ * LocalReservationShard is the in-process loopback.
+ */
+public interface ReservationShard {
+
+    /**
+     * Stable name used to place the shard on the hash ring.
+     */
+    String getShardId();
+
+    void saveBook(Book book);
+
+    Book findBook(String bookId);
+
+    ReservationOutcome reserve(String userId, String bookId, boolean priority);
+
+    ReservationOutcome cancel(String userId, String bookId);
+
+    List<Reservation> listReservations(String userId);
+
+    List<Reservation> listReservationsForBook(String bookId);
+}
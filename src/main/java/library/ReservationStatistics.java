@@ -0,0 +1,191 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Availability and demand figures kept up to date from reservation events,
+ * so dashboards never have to walk the repositories.
+ * Per book it tracks active reservations (holders plus waiting users),
+ * waiting-list depth and whether it is sold out. Each book's figures live
+ * in its own entry of a concurrent map and are changed atomically there,
+ * so events for different books never wait for each other. Books with
+ * reservations are also kept in a concurrent skip list ordered by count;
+ * a book moves in it under its own entry's update, and the most reserved
+ * ones come out in O(k). Totals are striped counters. Queries read all of
+ * this without locking and may see a book that is mid-update.
+ */
+public class ReservationStatistics implements ReservationListener {
+    private final Map<String, BookStats> books = new ConcurrentHashMap<>();
+    // books with reservations, highest count first, then by when they reached it
+    private final NavigableSet<Ranked> ranking = new ConcurrentSkipListSet<>();
+    private final AtomicLong arrivals = new AtomicLong();
+    private final Set<String> soldOut = ConcurrentHashMap.newKeySet();
+    private final LongAdder totalReservations = new LongAdder();
+    private final LongAdder totalWaiting = new LongAdder();
+
+    /**
+     * Starts from zero - register it on a service before any reservations
+     * are made, or use attach for a service that already has some.
+     */
+    public ReservationStatistics() {
+    }
+
+    /**
+     * Builds the figures from the current state with one pass over the
+     * repositories, then keeps them up to date. Nothing can change in
+     * between - the service is locked while this runs.
+     */
+    static ReservationStatistics attach(ReservationService service,
+                                        IBookRepository bookRepo, IReservationRepository reservationRepo) {
+        ReservationStatistics stats = new ReservationStatistics();
+        service.runExclusive(() -> {
+            for (Book book : bookRepo.findAll()) {
+                stats.trackBook(book);
+                String bookId = book.getId();
+                stats.change(bookId, (int) reservationRepo.streamByBook(bookId).count(),
+                        service.waitingListLength(bookId));
+            }
+            service.addListener(stats);
+        });
+        return stats;
+    }
+
+    /**
+     * Tells the statistics about a book added outside the service, so one
+     * added with no copies counts as sold out.
+     */
+    public void trackBook(Book book) {
+        updateSoldOut(book.getId(), book.getCopiesAvailable());
+    }
+
+    @Override
+    public void onReserved(String userId, String bookId) {
+        change(bookId, 1, 0);
+    }
+
+    @Override
+    public void onWaitlisted(String userId, String bookId) {
+        change(bookId, 1, 1);
+    }
+
+    @Override
+    public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+        change(bookId, -1, wasWaiting ? -1 : 0);
+    }
+
+    @Override
+    public void onPromoted(String userId, String bookId) {
+        // still reserved, just no longer waiting
+        change(bookId, 0, -1);
+    }
+
+    @Override
+    public void onCopiesChanged(String bookId, int copiesAvailable) {
+        updateSoldOut(bookId, copiesAvailable);
+    }
+
+    // Queries
+
+    public boolean isSoldOut(String bookId) {
+        return soldOut.contains(bookId);
+    }
+
+    public Set<String> getSoldOutBooks() {
+        return Set.copyOf(soldOut);
+    }
+
+    public int getSoldOutCount() {
+        return soldOut.size();
+    }
+
+    public int getReservationCount(String bookId) {
+        BookStats stats = books.get(bookId);
+        return stats == null ? 0 : stats.reservations;
+    }
+
+    public int getWaitingDepth(String bookId) {
+        BookStats stats = books.get(bookId);
+        return stats == null ? 0 : stats.waiting;
+    }
+
+    public long getTotalReservations() {
+        return totalReservations.sum();
+    }
+
+    public long getTotalWaiting() {
+        return totalWaiting.sum();
+    }
+
+    /**
+     * Ids of the k books with the most active reservations, most first.
+     * Books with none are left out; ties keep the order they reached the count.
+     */
+    public List<String> topReserved(int k) {
+        List<String> top = new ArrayList<>(Math.min(k, books.size()));
+        for (Ranked r : ranking) {
+            if (top.size() >= k) {
+                break;
+            }
+            top.add(r.bookId());
+        }
+        return top;
+    }
+
+    // Applies both deltas to the book's entry atomically; its place in the
+    // ranking moves with it, so no other book is touched
+    private void change(String bookId, int reservations, int waiting) {
+        if (reservations == 0 && waiting == 0) {
+            return;
+        }
+        books.compute(bookId, (id, stats) -> {
+            if (stats == null) {
+                stats = new BookStats();
+            }
+            if (reservations != 0) {
+                if (stats.rank != null) {
+                    ranking.remove(stats.rank);
+                }
+                stats.reservations += reservations;
+                stats.rank = stats.reservations > 0
+                        ? new Ranked(stats.reservations, arrivals.getAndIncrement(), id)
+                        : null;
+                if (stats.rank != null) {
+                    ranking.add(stats.rank);
+                }
+            }
+            stats.waiting += waiting;
+            return stats.reservations == 0 && stats.waiting == 0 ? null : stats;
+        });
+        totalReservations.add(reservations);
+        totalWaiting.add(waiting);
+    }
+
+    private void updateSoldOut(String bookId, int copiesAvailable) {
+        if (copiesAvailable <= 0) {
+            soldOut.add(bookId);
+        } else {
+            soldOut.remove(bookId);
+        }
+    }
+
+    // Only written inside books.compute for its own book
+    private static final class BookStats {
+        volatile int reservations;
+        volatile int waiting;
+        Ranked rank;
+    }
+
+    private record Ranked(int count, long arrival, String bookId) implements Comparable<Ranked> {
+        @Override
+        public int compareTo(Ranked other) {
+            if (count != other.count) {
+                return Integer.compare(other.count, count);
+            }
+            return Long.compare(arrival, other.arrival);
+        }
+    }
+}
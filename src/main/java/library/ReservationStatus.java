@@ -0,0 +1,32 @@
+package library;
+
+/**
+ * Result of a single reserve or cancel, used where the service reports
+ * outcomes instead of throwing.
+ */
+public enum ReservationStatus {
+    RESERVED(true, "Reserved"),
+    WAITLISTED(true, "Added to waiting list"),
+    CANCELLED(true, "Cancelled"),
+    BOOK_NOT_FOUND(false, "Book not found"),
+    ALREADY_RESERVED(false, "The user already reserved this book"),
+    NO_COPIES_AVAILABLE(false, "No copies available"),
+    NO_RESERVATION(false, "No reservations found"),
+    CONFLICT(false, "The book kept changing under other service instances, try again");
+
+    private final boolean success;
+    private final String message;
+
+    ReservationStatus(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,22 @@
+package library;
+
+/**
+ * Waiting-list tiers. When a copy is freed, each tier's longest-waiting
+ * user is scored weight x time waited, and the highest score gets the
+ * copy. Higher tiers get ahead, but anyone who waits long enough is served.
+ */
+public enum ReservationTier {
+    STAFF(4),
+    COURSE(2),
+    GENERAL(1);
+
+    private final int weight;
+
+    ReservationTier(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
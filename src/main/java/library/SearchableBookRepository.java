@@ -0,0 +1,74 @@
+package library;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Book repository decorator that keeps a BookTitleIndex in step with every
+ * save, so titles can be searched without scanning the catalog.
+ * The index is built from the backing repository once, when wrapped.
+ */
+class SearchableBookRepository implements IBookRepository {
+    private final IBookRepository backing;
+    private final BookTitleIndex index = new BookTitleIndex();
+
+    SearchableBookRepository(IBookRepository backing) {
+        this.backing = backing;
+        backing.streamAll().forEach(book -> index.index(book.getId(), book.getTitle()));
+    }
+
+    @Override
+    public Book findById(String id) {
+        return backing.findById(id);
+    }
+
+    @Override
+    public void save(Book book) {
+        backing.save(book);
+        index.index(book.getId(), book.getTitle());
+    }
+
+    @Override
+    public void saveAll(Collection<Book> books) {
+        backing.saveAll(books);
+        for (Book book : books) {
+            index.index(book.getId(), book.getTitle());
+        }
+    }
+
+    @Override
+    public boolean saveIfVersion(Book book, long expectedVersion) {
+        if (!backing.saveIfVersion(book, expectedVersion)) {
+            return false;
+        }
+        // a reservation only changes copies, which the index skips without locking
+        index.index(book.getId(), book.getTitle());
+        return true;
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return backing.findAll();
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return backing.streamAll();
+    }
+
+    /**
+     * Up to k books whose titles match the query, best first. Every word
+     * must appear in the title; the last one may be unfinished, so
+     * "java pro" finds "Java Programming". Matching ignores case.
+     */
+    List<Book> search(String query, int k) {
+        List<Book> books = new ArrayList<>();
+        for (String id : index.search(query, k)) {
+            Book book = backing.findById(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+}
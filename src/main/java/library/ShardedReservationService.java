@@ -0,0 +1,119 @@
+package library;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Spreads books over several ReservationShards by consistent hash of the
+ * bookId. Everything about one book - copies, reservations, waiting list -
+ * lives on one shard, so reserve, cancel and listReservationsForBook go to
+ * a single shard. listReservations needs every shard and fans out.
+ */
+public class ShardedReservationService {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final List<ReservationShard> shards;
+    private final ConsistentHashRing<ReservationShard> ring = new ConsistentHashRing<>(VIRTUAL_NODES);
+    private final Executor fanOutExecutor;
+
+    /**
+     * Fans out on the calling thread, which is fine for in-process shards.
+     */
+    public ShardedReservationService(List<ReservationShard> shards) {
+        this(shards, Runnable::run);
+    }
+
+    /**
+     * Fans out per-user queries on the given executor, so remote shards are
+     * queried in parallel.
+     */
+    public ShardedReservationService(List<ReservationShard> shards, Executor fanOutExecutor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.fanOutExecutor = fanOutExecutor;
+        for (ReservationShard shard : this.shards) {
+            ring.add(shard.getShardId(), shard);
+        }
+    }
+
+    /**
+     * Builds n in-process shards, each with its own repositories from the factories.
+     */
+    static ShardedReservationService local(int n, Supplier<IBookRepository> books,
+                                           Supplier<IReservationRepository> reservations) {
+        List<ReservationShard> shards = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            shards.add(new LocalReservationShard("shard-" + i, books.get(), reservations.get()));
+        }
+        return new ShardedReservationService(shards);
+    }
+
+    public ReservationShard shardFor(String bookId) {
+        return ring.nodeFor(bookId);
+    }
+
+    public List<ReservationShard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Adds or updates a book on the shard that owns it.
+     */
+    public void saveBook(Book book) {
+        shardFor(book.getId()).saveBook(book);
+    }
+
+    public Book findBook(String bookId) {
+        return shardFor(bookId).findBook(bookId);
+    }
+
+    /**
+     * Reserve a book for a user, see ReservationService.reserve.
+     */
+    public void reserve(String userId, String bookId) {
+        ReservationService.throwIfFailed(tryReserve(userId, bookId).getStatus());
+    }
+
+    public void reservePriority(String userId, String bookId) {
+        ReservationService.throwIfFailed(tryReservePriority(userId, bookId).getStatus());
+    }
+
+    public void cancel(String userId, String bookId) {
+        ReservationService.throwIfFailed(tryCancel(userId, bookId).getStatus());
+    }
+
+    public ReservationOutcome tryReserve(String userId, String bookId) {
+        return shardFor(bookId).reserve(userId, bookId, false);
+    }
+
+    public ReservationOutcome tryReservePriority(String userId, String bookId) {
+        return shardFor(bookId).reserve(userId, bookId, true);
+    }
+
+    public ReservationOutcome tryCancel(String userId, String bookId) {
+        return shardFor(bookId).cancel(userId, bookId);
+    }
+
+    public List<Reservation> listReservationsForBook(String bookId) {
+        return shardFor(bookId).listReservationsForBook(bookId);
+    }
+
+    /**
+     * A user's reservations from every shard, merged.
+     */
+    public List<Reservation> listReservations(String userId) {
+        List<CompletableFuture<List<Reservation>>> parts = new ArrayList<>(shards.size());
+        for (ReservationShard shard : shards) {
+            parts.add(CompletableFuture.supplyAsync(() -> shard.listReservations(userId), fanOutExecutor));
+        }
+        List<Reservation> merged = new ArrayList<>();
+        for (CompletableFuture<List<Reservation>> part : parts) {
+            merged.addAll(part.join());
+        }
+        return merged;
+    }
+}
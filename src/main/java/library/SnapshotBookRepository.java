@@ -0,0 +1,56 @@
+package library;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Book repository whose map is never changed in place. Each save builds a
+ * new PersistentHashMap version (sharing almost everything with the old
+ * one) and publishes it with a single volatile write, so reads take no
+ * lock and always see one complete version. Writers are serialized.
+ * The Book objects themselves are shared, as in the other repositories.
+ */
+class SnapshotBookRepository implements IBookRepository {
+    private volatile PersistentHashMap<String, Book> books = PersistentHashMap.empty();
+
+    @Override
+    public Book findById(String id) {
+        return books.get(id);
+    }
+
+    @Override
+    public synchronized void save(Book book) {
+        books = books.put(book.getId(), book);
+    }
+
+    @Override
+    public synchronized void saveAll(Collection<Book> batch) {
+        PersistentHashMap<String, Book> next = books;
+        for (Book book : batch) {
+            next = next.put(book.getId(), book);
+        }
+        books = next;
+    }
+
+    @Override
+    public synchronized boolean saveIfVersion(Book book, long expectedVersion) {
+        Book stored = books.get(book.getId());
+        if (stored != null && stored != book && stored.getVersion() != expectedVersion) {
+            return false;
+        }
+        book.setVersion((stored == book ? book.getVersion() : expectedVersion) + 1);
+        books = books.put(book.getId(), book);
+        return true;
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return books.valueList();
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        // walks the version current at the call, whatever is saved meanwhile
+        return books.values();
+    }
+}
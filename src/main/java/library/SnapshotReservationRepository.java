@@ -0,0 +1,198 @@
+package library;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Reservation repository with lock-free, point-in-time reads (MVCC).
+ * All indexes live in one immutable State built from persistent maps
+ * (user -> book -> reservations and book -> user -> reservations).
+ * A write copies only the paths it touches and publishes the new State
+ * with one volatile write; writers are serialized, readers never block
+ * and never see half of a change. saveAll and deleteAll publish once, so
+ * a batch appears all at once. Lists come back in no particular order.
+ */
+class SnapshotReservationRepository implements IReservationRepository {
+    private volatile State state = new State(PersistentHashMap.empty(), PersistentHashMap.empty(), 0);
+
+    @Override
+    public synchronized void save(Reservation reservation) {
+        state = state.with(reservation);
+    }
+
+    @Override
+    public synchronized void saveAll(Collection<Reservation> reservations) {
+        State next = state;
+        for (Reservation r : reservations) {
+            next = next.with(r);
+        }
+        state = next;
+    }
+
+    @Override
+    public boolean existsByUserAndBook(String userId, String bookId) {
+        return state.exists(userId, bookId);
+    }
+
+    @Override
+    public List<Reservation> findByUser(String userId) {
+        return state.findByUser(userId);
+    }
+
+    @Override
+    public List<Reservation> findByBook(String bookId) {
+        return state.findByBook(bookId);
+    }
+
+    @Override
+    public Stream<Reservation> streamByUser(String userId) {
+        return State.stream(state.byUser.get(userId));
+    }
+
+    @Override
+    public Stream<Reservation> streamByBook(String bookId) {
+        return State.stream(state.byBook.get(bookId));
+    }
+
+    @Override
+    public Set<String> findReservedUsers(String bookId, Collection<String> userIds) {
+        PersistentHashMap<String, Reservation[]> users = state.byBook.get(bookId);
+        Set<String> reserved = new HashSet<>();
+        if (users != null) {
+            for (String userId : userIds) {
+                if (users.containsKey(userId)) {
+                    reserved.add(userId);
+                }
+            }
+        }
+        return reserved;
+    }
+
+    @Override
+    public synchronized void delete(String userId, String bookId) {
+        state = state.without(userId, bookId);
+    }
+
+    @Override
+    public synchronized void deleteAll(String bookId, Collection<String> userIds) {
+        State next = state;
+        for (String userId : userIds) {
+            next = next.without(userId, bookId);
+        }
+        state = next;
+    }
+
+    /**
+     * The current version. It never changes, so several reads against it
+     * agree with each other even while writers carry on.
+     */
+    Snapshot snapshot() {
+        return new Snapshot(state);
+    }
+
+    int size() {
+        return state.size;
+    }
+
+    /**
+     * Read-only, point-in-time view of the repository.
+     */
+    static final class Snapshot {
+        private final State state;
+
+        private Snapshot(State state) {
+            this.state = state;
+        }
+
+        boolean existsByUserAndBook(String userId, String bookId) {
+            return state.exists(userId, bookId);
+        }
+
+        List<Reservation> findByUser(String userId) {
+            return state.findByUser(userId);
+        }
+
+        List<Reservation> findByBook(String bookId) {
+            return state.findByBook(bookId);
+        }
+
+        int size() {
+            return state.size;
+        }
+    }
+
+    private static final class State {
+        final PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> byUser;
+        final PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> byBook;
+        final int size;
+
+        State(PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> byUser,
+              PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> byBook, int size) {
+            this.byUser = byUser;
+            this.byBook = byBook;
+            this.size = size;
+        }
+
+        State with(Reservation r) {
+            String userId = r.getUserId();
+            String bookId = r.getBookId();
+            PersistentHashMap<String, Reservation[]> books = orEmpty(byUser.get(userId));
+            Reservation[] existing = books.get(bookId);
+            Reservation[] pair;
+            if (existing == null) {
+                pair = new Reservation[]{r};
+            } else {
+                pair = Arrays.copyOf(existing, existing.length + 1);
+                pair[existing.length] = r;
+            }
+            return new State(byUser.put(userId, books.put(bookId, pair)),
+                    byBook.put(bookId, orEmpty(byBook.get(bookId)).put(userId, pair)), size + 1);
+        }
+
+        State without(String userId, String bookId) {
+            PersistentHashMap<String, Reservation[]> books = byUser.get(userId);
+            Reservation[] pair = books == null ? null : books.get(bookId);
+            if (pair == null) {
+                return this;
+            }
+            return new State(removeInner(byUser, userId, bookId), removeInner(byBook, bookId, userId),
+                    size - pair.length);
+        }
+
+        boolean exists(String userId, String bookId) {
+            PersistentHashMap<String, Reservation[]> books = byUser.get(userId);
+            return books != null && books.containsKey(bookId);
+        }
+
+        List<Reservation> findByUser(String userId) {
+            return list(byUser.get(userId));
+        }
+
+        List<Reservation> findByBook(String bookId) {
+            return list(byBook.get(bookId));
+        }
+
+        static List<Reservation> list(PersistentHashMap<String, Reservation[]> inner) {
+            if (inner == null) {
+                return List.of();
+            }
+            List<Reservation> list = new ArrayList<>(inner.size());
+            inner.forEach((k, pair) -> Collections.addAll(list, pair));
+            return list;
+        }
+
+        static Stream<Reservation> stream(PersistentHashMap<String, Reservation[]> inner) {
+            return inner == null ? Stream.empty() : inner.values().flatMap(Arrays::stream);
+        }
+
+        private static PersistentHashMap<String, Reservation[]> orEmpty(PersistentHashMap<String, Reservation[]> map) {
+            return map == null ? PersistentHashMap.empty() : map;
+        }
+
+        private static PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> removeInner(
+                PersistentHashMap<String, PersistentHashMap<String, Reservation[]>> outer, String key, String innerKey) {
+            PersistentHashMap<String, Reservation[]> inner = outer.get(key).remove(innerKey);
+            return inner.isEmpty() ? outer.remove(key) : outer.put(key, inner);
+        }
+    }
+}
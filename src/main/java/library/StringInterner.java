@@ -0,0 +1,61 @@
+package library;
+
+import java.util.*;
+
+/**
+ * Maps strings to small int handles (starting at 1) and back. Released
+ * handles are handed out again, so the tables stay as large as the number
+ * of strings in use. Not thread-safe.
+ */
+class StringInterner {
+    private final Map<String, Integer> handles = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final IntList free = new IntList();
+
+    StringInterner() {
+        names.add(null); // handle 0 is never used
+    }
+
+    int intern(String name) {
+        Integer handle = handles.get(name);
+        if (handle != null) {
+            return handle;
+        }
+        int next;
+        if (free.isEmpty()) {
+            next = names.size();
+            names.add(name);
+        } else {
+            next = free.removeLast();
+            names.set(next, name);
+        }
+        handles.put(name, next);
+        return next;
+    }
+
+    /**
+     * Forgets the string behind handle; the caller must hold no other
+     * reference to the handle, as it may be given to another string.
+     */
+    void release(int handle) {
+        handles.remove(names.get(handle));
+        names.set(handle, null);
+        free.add(handle);
+    }
+
+    /**
+     * Handle for name, or 0 if it was never interned.
+     */
+    int lookup(String name) {
+        Integer handle = handles.get(name);
+        return handle == null ? 0 : handle;
+    }
+
+    String name(int handle) {
+        return names.get(handle);
+    }
+
+    int size() {
+        return handles.size();
+    }
+}
@@ -0,0 +1,192 @@
+package library;
+
+import java.util.*;
+
+/**
+ * Hierarchical timer wheel keyed by K. Four levels of 64 slots; level n
+ * slots are 64^n ticks wide. Scheduling and cancelling are O(1) (a hash
+ * lookup plus a doubly-linked-list splice); timers far in the future sit
+ * in a coarse slot and are cascaded down as the wheel turns. Nothing is
+ * ever scanned except the slot whose time has come: a bitmap per level
+ * marks the non-empty slots, so advancing jumps straight to the next tick
+ * that has timers to fire or cascade, however long the wheel sat idle.
+ * Methods are synchronized; expiry callbacks run outside the lock.
+ */
+class TimerWheel<K> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Node<K>[][] wheels;
+    // bit s of occupied[level] is set while wheels[level][s] holds timers
+    private final long[] occupied = new long[LEVELS];
+    private final Map<K, Node<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = new Node[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Node<K> head = new Node<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Schedules key to fire at deadlineMillis, replacing any earlier timer for it.
+     */
+    synchronized void schedule(K key, long deadlineMillis) {
+        Node<K> old = timers.remove(key);
+        if (old != null) {
+            unlink(old);
+        }
+        // round up so a timer never fires early
+        long deadline = Math.max(currentTick + 1, (deadlineMillis + tickMillis - 1) / tickMillis);
+        Node<K> node = new Node<>(key, deadline);
+        timers.put(key, node);
+        place(node);
+    }
+
+    synchronized boolean cancel(K key) {
+        Node<K> node = timers.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    synchronized long deadlineMillis(K key) {
+        Node<K> node = timers.get(key);
+        return node == null ? -1 : node.deadline * tickMillis;
+    }
+
+    synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Turns the wheel up to nowMillis and returns the keys whose timers fired,
+     * in deadline order.
+     */
+    List<K> advanceTo(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMillis / tickMillis;
+            while (currentTick < target) {
+                if (timers.isEmpty()) {
+                    currentTick = target;
+                    break;
+                }
+                // the ticks skipped have nothing to fire or cascade
+                currentTick = Math.min(target, nextBusyTick());
+                cascade();
+                Node<K> head = wheels[0][(int) (currentTick & MASK)];
+                while (head.next != head) {
+                    Node<K> node = head.next;
+                    unlink(node);
+                    if (node.deadline <= currentTick) {
+                        timers.remove(node.key);
+                        expired.add(node.key);
+                    } else {
+                        place(node);
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    // First tick after the current one whose level-0 slot holds timers or
+    // that cascades a non-empty slot; Long.MAX_VALUE if there is none
+    private long nextBusyTick() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * level;
+            long index = currentTick >>> shift;
+            long ahead = Long.rotateRight(occupied[level], (int) ((index + 1) & MASK));
+            if (ahead != 0) {
+                next = Math.min(next, (index + 1 + Long.numberOfTrailingZeros(ahead)) << shift);
+            }
+        }
+        return next;
+    }
+
+    // When a lower wheel wraps, pull the matching slot of the level above down
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                return;
+            }
+            Node<K> head = wheels[level][(int) ((currentTick >>> (BITS * level)) & MASK)];
+            while (head.next != head) {
+                Node<K> node = head.next;
+                unlink(node);
+                place(node);
+            }
+        }
+    }
+
+    private void place(Node<K> node) {
+        // due now (cascaded onto the current tick) goes in the slot being processed
+        long delta = Math.max(0, Math.min(node.deadline - currentTick, MAX_DELTA));
+        long at = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((at >>> (BITS * level)) & MASK);
+        node.level = level;
+        node.slot = slot;
+        node.linkBefore(wheels[level][slot]);
+        occupied[level] |= 1L << slot;
+    }
+
+    private void unlink(Node<K> node) {
+        node.unlink();
+        Node<K> head = wheels[node.level][node.slot];
+        if (head.next == head) {
+            occupied[node.level] &= ~(1L << node.slot);
+        }
+    }
+
+    private static final class Node<K> {
+        final K key;
+        final long deadline;
+        int level;
+        int slot;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        void linkBefore(Node<K> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
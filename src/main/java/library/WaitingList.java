@@ -0,0 +1,167 @@
+package library;
+
+import java.util.*;
+
+/**
+ * FIFO queue of user ids waiting for one book.
+ * Backed by an array with a user -> slot index, so enqueue, poll and
+ * removing a given user are O(1) (amortized); removed slots are skipped and
+ * squeezed out when the array fills up. A Fenwick tree over the slots
+ * answers queue position in O(log n). All methods are synchronized.
+ */
+class WaitingList {
+    private String[] slots;
+    private int[] live; // Fenwick tree, 1 per occupied slot
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    private int head;
+    private int tail;
+
+    WaitingList() {
+        this(8);
+    }
+
+    WaitingList(int capacity) {
+        slots = new String[Math.max(2, capacity)];
+        live = new int[slots.length + 1];
+    }
+
+    /**
+     * Adds the user at the back. Returns false if already waiting.
+     */
+    synchronized boolean enqueue(String userId) {
+        if (slotOf.containsKey(userId)) {
+            return false;
+        }
+        if (tail == slots.length) {
+            compact();
+        }
+        slots[tail] = userId;
+        slotOf.put(userId, tail);
+        add(tail, 1);
+        tail++;
+        return true;
+    }
+
+    /**
+     * Removes and returns the first waiting user, or null if none.
+     */
+    synchronized String poll() {
+        skipRemoved();
+        if (head == tail) {
+            return null;
+        }
+        String userId = slots[head];
+        clear(head);
+        slotOf.remove(userId);
+        head++;
+        return userId;
+    }
+
+    synchronized String peek() {
+        skipRemoved();
+        return head == tail ? null : slots[head];
+    }
+
+    /**
+     * Takes the user out of the queue wherever they are. Returns false if not waiting.
+     */
+    synchronized boolean remove(String userId) {
+        Integer slot = slotOf.remove(userId);
+        if (slot == null) {
+            return false;
+        }
+        clear(slot);
+        if (slotOf.isEmpty()) {
+            head = 0;
+            tail = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 0-based place in the queue, or -1 if the user is not waiting.
+     */
+    synchronized int position(String userId) {
+        Integer slot = slotOf.get(userId);
+        return slot == null ? -1 : prefix(slot);
+    }
+
+    synchronized boolean contains(String userId) {
+        return slotOf.containsKey(userId);
+    }
+
+    synchronized int size() {
+        return slotOf.size();
+    }
+
+    synchronized boolean isEmpty() {
+        return slotOf.isEmpty();
+    }
+
+    /**
+     * Waiting users in queue order.
+     */
+    synchronized List<String> toList() {
+        List<String> users = new ArrayList<>(slotOf.size());
+        for (int i = head; i < tail; i++) {
+            if (slots[i] != null) {
+                users.add(slots[i]);
+            }
+        }
+        return users;
+    }
+
+    private void skipRemoved() {
+        while (head < tail && slots[head] == null) {
+            head++;
+        }
+    }
+
+    private void clear(int slot) {
+        slots[slot] = null;
+        add(slot, -1);
+    }
+
+    // Squeezes out removed slots, growing the array if it is more than half full
+    private void compact() {
+        int size = slotOf.size();
+        String[] next = size * 2 > slots.length ? new String[slots.length * 2] : new String[slots.length];
+        int n = 0;
+        for (int i = head; i < tail; i++) {
+            if (slots[i] != null) {
+                next[n] = slots[i];
+                slotOf.put(slots[i], n);
+                n++;
+            }
+        }
+        slots = next;
+        head = 0;
+        tail = n;
+        // rebuild the Fenwick tree in O(n)
+        live = new int[slots.length + 1];
+        for (int i = 1; i < live.length; i++) {
+            if (i <= n) {
+                live[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < live.length) {
+                live[parent] += live[i];
+            }
+        }
+    }
+
+    private void add(int slot, int delta) {
+        for (int i = slot + 1; i < live.length; i += i & -i) {
+            live[i] += delta;
+        }
+    }
+
+    // occupied slots before slot
+    private int prefix(int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += live[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,151 @@
+package library;
+
+import java.util.*;
+
+/**
+ * Waiting users for one book, one FIFO WaitingList per ReservationTier.
+ * Time is counted in arrivals: every enqueue takes the next ticket, and a
+ * waiter's age is how many tickets were handed out after theirs. poll
+ * compares only the head of each tier (the oldest there), scoring
+ * weight x (age + 1), so every operation costs O(1) (amortized) no matter
+ * how many are waiting. Using tickets instead of the clock keeps
+ * promotions deterministic, so replaying the same operations in order
+ * promotes the same users. All methods are synchronized.
+ */
+class WaitingScheduler {
+    private static final ReservationTier[] TIERS = ReservationTier.values();
+
+    private final WaitingList[] queues = new WaitingList[TIERS.length];
+    private final Map<String, Waiter> waiters = new HashMap<>();
+    private long nextTicket;
+
+    WaitingScheduler() {
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new WaitingList();
+        }
+    }
+
+    /**
+     * Adds the user at the back of their tier. Returns false if already waiting.
+     */
+    synchronized boolean enqueue(String userId, ReservationTier tier) {
+        if (waiters.containsKey(userId)) {
+            return false;
+        }
+        add(new Waiter(userId, tier, nextTicket++));
+        return true;
+    }
+
+    /**
+     * Puts back a waiter read from a snapshot, keeping their ticket.
+     */
+    synchronized void restore(Waiter waiter) {
+        if (!waiters.containsKey(waiter.userId())) {
+            add(waiter);
+            nextTicket = Math.max(nextTicket, waiter.ticket() + 1);
+        }
+    }
+
+    /**
+     * The ticket the next arrival will get. Users who joined and left
+     * took tickets too, so this is usually past the newest waiter's.
+     */
+    synchronized long nextTicket() {
+        return nextTicket;
+    }
+
+    /**
+     * Puts back the counter read from a snapshot, so ages - and with them
+     * who gets the next copy - come out as before the restart.
+     */
+    synchronized void restoreNextTicket(long ticket) {
+        nextTicket = Math.max(nextTicket, ticket);
+    }
+
+    private void add(Waiter waiter) {
+        waiters.put(waiter.userId(), waiter);
+        queues[waiter.tier().ordinal()].enqueue(waiter.userId());
+    }
+
+    /**
+     * Removes and returns the user who should get the next copy, or null.
+     */
+    synchronized String poll() {
+        WaitingList best = null;
+        long bestScore = -1;
+        long bestTicket = Long.MAX_VALUE;
+        for (int i = 0; i < queues.length; i++) {
+            String head = queues[i].peek();
+            if (head == null) {
+                continue;
+            }
+            long ticket = waiters.get(head).ticket();
+            long score = TIERS[i].getWeight() * (nextTicket - ticket);
+            // on a tie the one who came first wins
+            if (score > bestScore || (score == bestScore && ticket < bestTicket)) {
+                best = queues[i];
+                bestScore = score;
+                bestTicket = ticket;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        String userId = best.poll();
+        waiters.remove(userId);
+        return userId;
+    }
+
+    /**
+     * Takes the user out wherever they are. Returns false if not waiting.
+     */
+    synchronized boolean remove(String userId) {
+        Waiter waiter = waiters.remove(userId);
+        return waiter != null && queues[waiter.tier().ordinal()].remove(userId);
+    }
+
+    /**
+     * 0-based place within the user's own tier, or -1 if not waiting.
+     */
+    synchronized int position(String userId) {
+        Waiter waiter = waiters.get(userId);
+        return waiter == null ? -1 : queues[waiter.tier().ordinal()].position(userId);
+    }
+
+    synchronized ReservationTier tierOf(String userId) {
+        Waiter waiter = waiters.get(userId);
+        return waiter == null ? null : waiter.tier();
+    }
+
+    synchronized boolean contains(String userId) {
+        return waiters.containsKey(userId);
+    }
+
+    synchronized int size() {
+        return waiters.size();
+    }
+
+    synchronized int size(ReservationTier tier) {
+        return queues[tier.ordinal()].size();
+    }
+
+    synchronized boolean isEmpty() {
+        return waiters.isEmpty();
+    }
+
+    /**
+     * Every waiter, tier by tier, each tier in queue order.
+     */
+    synchronized List<Waiter> toList() {
+        List<Waiter> list = new ArrayList<>(waiters.size());
+        for (WaitingList queue : queues) {
+            for (String userId : queue.toList()) {
+                list.add(waiters.get(userId));
+            }
+        }
+        return list;
+    }
+
+    record Waiter(String userId, ReservationTier tier, long ticket) {
+    }
+}
@@ -0,0 +1,71 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncReservationServiceTest {
+
+    @Test
+    void failuresComeBackAsOutcomesNotExceptions() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "The Bible", 1));
+
+        try (AsyncReservationService async = new AsyncReservationService(service)) {
+            assertEquals(ReservationStatus.RESERVED,
+                    async.reserveAsync("Nebojsa", "1").get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(ReservationStatus.ALREADY_RESERVED,
+                    async.reserveAsync("Nebojsa", "1").get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(ReservationStatus.NO_COPIES_AVAILABLE,
+                    async.reserveAsync("Alice", "1").get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(ReservationStatus.BOOK_NOT_FOUND,
+                    async.reserveAsync("Alice", "NON_EXISTENT_BOOK").get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(ReservationStatus.NO_RESERVATION,
+                    async.cancelAsync("Alice", "1").get(5, TimeUnit.SECONDS).getStatus());
+
+            assertEquals(1, async.listReservationsAsync("Nebojsa").get(5, TimeUnit.SECONDS).size());
+        }
+    }
+
+    @Test
+    void manyInFlightRequestsAllComplete() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Hot New Release", 500));
+
+        try (AsyncReservationService async = new AsyncReservationService(service)) {
+            List<CompletableFuture<ReservationOutcome>> futures = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                futures.add(async.reserveAsync("User" + i, "1"));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            long reserved = futures.stream().filter(f -> f.join().isSuccess()).count();
+            assertEquals(500, reserved);
+            assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+        }
+    }
+
+    @Test
+    void defaultExecutorIsBounded() {
+        ExecutorService executor = AsyncReservationService.defaultExecutor();
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            assertEquals(pool.getCorePoolSize(), pool.getMaximumPoolSize());
+            assertTrue(pool.getQueue().remainingCapacity() < Integer.MAX_VALUE);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
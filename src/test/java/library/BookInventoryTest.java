@@ -0,0 +1,77 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookInventoryTest {
+
+    @Test
+    void tryAcquireCopyStopsAtZero() {
+        Book book = new Book("1", "The Bible", 1);
+
+        assertTrue(book.tryAcquireCopy());
+        assertFalse(book.tryAcquireCopy());
+        assertEquals(0, book.getCopiesAvailable());
+
+        assertEquals(1, book.releaseCopy());
+    }
+
+    @Test
+    void contendedAcquireNeverOversells() throws InterruptedException {
+        // 16 threads fight over 10,000 copies with 5,000 attempts each
+        Book book = new Book("1", "Hot New Release", 10_000);
+        AtomicInteger acquired = new AtomicInteger();
+
+        runThreads(16, () -> {
+            for (int i = 0; i < 5_000; i++) {
+                if (book.tryAcquireCopy()) {
+                    acquired.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(10_000, acquired.get());
+        assertEquals(0, book.getCopiesAvailable());
+    }
+
+    @Test
+    void contendedAcquireAndReleaseHasNoLostUpdates() throws InterruptedException {
+        Book book = new Book("1", "Hot New Release", 100);
+
+        // every successful acquire is paired with a release
+        runThreads(16, () -> {
+            for (int i = 0; i < 20_000; i++) {
+                if (book.tryAcquireCopy()) {
+                    book.releaseCopy();
+                }
+            }
+        });
+
+        assertEquals(100, book.getCopiesAvailable());
+    }
+
+    private static void runThreads(int count, Runnable work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                work.run();
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookSearchTest {
+
+    private static List<String> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
+    }
+
+    @Test
+    void findsBooksByWordsAndPrefix() {
+        IBookRepository backing = new MemoryBookRepository();
+        backing.save(new Book("1", "The Bible", 10));
+        SearchableBookRepository bookRepo = new SearchableBookRepository(backing);
+        bookRepo.save(new Book("2", "Java Programming", 5));
+        bookRepo.save(new Book("3", "WW2 History", 1));
+        bookRepo.save(new Book("4", "Advanced Java Programming Patterns", 2));
+        bookRepo.save(new Book("5", "Javascript: The Good Parts", 3));
+
+        // already in the backing store before wrapping
+        assertEquals(List.of("1"), ids(bookRepo.search("bible", 10)));
+        // case-folded, punctuation ignored
+        assertEquals(List.of("3"), ids(bookRepo.search("ww2", 10)));
+        // whole-word "java" beats "javascript", shorter title first
+        assertEquals(List.of("2", "4", "5"), ids(bookRepo.search("JAVA", 10)));
+        // type-ahead on the last word
+        assertEquals(List.of("2", "4"), ids(bookRepo.search("java prog", 10)));
+        assertEquals(List.of("5"), ids(bookRepo.search("the good pa", 10)));
+        // top-k
+        assertEquals(List.of("2", "4"), ids(bookRepo.search("jav", 2)));
+        assertTrue(bookRepo.search("cooking", 10).isEmpty());
+        assertTrue(bookRepo.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void indexFollowsTitleChanges() {
+        SearchableBookRepository bookRepo = new SearchableBookRepository(new MemoryBookRepository());
+        bookRepo.save(new Book("1", "Java Programming", 5));
+        bookRepo.save(new Book("1", "Kotlin Programming", 5));
+
+        assertTrue(bookRepo.search("java", 10).isEmpty());
+        assertEquals(List.of("1"), ids(bookRepo.search("kotlin", 10)));
+        assertEquals(List.of("1"), ids(bookRepo.search("programming", 10)));
+    }
+
+    @Test
+    void reservationsKeepTheBookSearchable() {
+        SearchableBookRepository bookRepo = new SearchableBookRepository(new MemoryBookRepository());
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        bookRepo.save(new Book("1", "The Bible", 10));
+
+        service.reserve("Nebojsa", "1");
+
+        List<Book> found = bookRepo.search("bib", 1);
+        assertEquals(1, found.size());
+        assertEquals(9, found.get(0).getCopiesAvailable());
+    }
+
+    @Test
+    void prefixTopKIsTheBestOfAllMatches() {
+        BookTitleIndex index = new BookTitleIndex();
+        String[] words = {"java", "javanese", "javascript", "jar", "kotlin", "volume"};
+        Random random = new Random(42);
+        List<String[]> titles = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 1 + random.nextInt(5);
+            for (int w = 0; w < length; w++) {
+                title.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            String id = String.format("%03d", i);
+            index.index(id, title.toString());
+            titles.add(new String[]{id, title.toString()});
+        }
+
+        for (String prefix : List.of("j", "ja", "jav", "java", "javas", "k", "x")) {
+            // rank: the whole word first, then fewer distinct words, then id
+            List<String> expected = titles.stream()
+                    .filter(t -> BookTitleIndex.tokenize(t[1]).stream().anyMatch(w -> w.startsWith(prefix)))
+                    .sorted(Comparator.<String[]>comparingInt(
+                                    t -> BookTitleIndex.tokenize(t[1]).contains(prefix) ? 0 : 1)
+                            .thenComparingLong(t -> BookTitleIndex.tokenize(t[1]).stream().distinct().count())
+                            .thenComparing(t -> t[0]))
+                    .map(t -> t[0])
+                    .limit(7)
+                    .toList();
+            assertEquals(expected, index.search(prefix, 7), prefix);
+        }
+    }
+}
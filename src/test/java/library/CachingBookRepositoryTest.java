@@ -0,0 +1,124 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingBookRepositoryTest {
+
+    @Test
+    void hitsMissesAndLruEviction() {
+        IBookRepository backing = new MemoryBookRepository();
+        backing.save(new Book("1", "The Bible", 10));
+        backing.save(new Book("2", "Java Programming", 5));
+        backing.save(new Book("3", "WW2 History", 1));
+        CachingBookRepository cache = new CachingBookRepository(backing, 2);
+
+        cache.findById("1"); // miss
+        cache.findById("1"); // hit
+        cache.findById("2"); // miss
+        cache.findById("1"); // hit - "2" is now least recently used
+        cache.findById("3"); // miss, evicts "2"
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(0.4, cache.getHitRate(), 0.0001);
+
+        cache.findById("2"); // evicted, so a miss again
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    void saveThroughOneInstanceInvalidatesTheOthers() {
+        // backing store that hands out copies, like a remote database would
+        CopyingBookRepository backing = new CopyingBookRepository();
+        backing.save(new Book("1", "The Bible", 10));
+
+        BookCacheGroup group = new BookCacheGroup();
+        CachingBookRepository cacheA = new CachingBookRepository(backing, 100, group);
+        CachingBookRepository cacheB = new CachingBookRepository(backing, 100, group);
+        ReservationService serviceA = new ReservationService(cacheA, new MemoryReservationRepository());
+        ReservationService serviceB = new ReservationService(cacheB, new MemoryReservationRepository());
+
+        // both caches warm
+        assertEquals(10, cacheA.findById("1").getCopiesAvailable());
+        assertEquals(10, cacheB.findById("1").getCopiesAvailable());
+
+        serviceA.reserve("Nebojsa", "1");
+        // B must not keep serving its stale copy
+        assertEquals(9, cacheB.findById("1").getCopiesAvailable());
+
+        serviceB.reserve("Alice", "1");
+        assertEquals(8, cacheA.findById("1").getCopiesAvailable());
+        assertEquals(8, backing.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void missDoesNotReinstallABookInvalidatedWhileLoading() {
+        Runnable[] duringRead = {null};
+        CopyingBookRepository backing = new CopyingBookRepository() {
+            @Override
+            public Book findById(String id) {
+                Book book = super.findById(id);
+                Runnable hook = duringRead[0];
+                duringRead[0] = null;
+                if (hook != null) {
+                    hook.run();
+                }
+                return book;
+            }
+        };
+        backing.save(new Book("1", "The Bible", 10));
+        BookCacheGroup group = new BookCacheGroup();
+        CachingBookRepository cacheA = new CachingBookRepository(backing, 100, group);
+        CachingBookRepository cacheB = new CachingBookRepository(backing, 100, group);
+
+        // B saves after A's miss has read the old copy but before A caches it
+        duringRead[0] = () -> cacheB.save(new Book("1", "The Bible", 3));
+        assertEquals(10, cacheA.findById("1").getCopiesAvailable());
+        assertEquals(3, cacheA.findById("1").getCopiesAvailable());
+    }
+
+    private static class CopyingBookRepository implements IBookRepository {
+        private final Map<String, Book> books = new HashMap<>();
+
+        @Override
+        public Book findById(String id) {
+            Book b = books.get(id);
+            return b == null ? null : copy(b);
+        }
+
+        @Override
+        public void save(Book book) {
+            books.put(book.getId(), copy(book));
+        }
+
+        @Override
+        public synchronized boolean saveIfVersion(Book book, long expectedVersion) {
+            Book stored = books.get(book.getId());
+            if (stored != null && stored.getVersion() != expectedVersion) {
+                return false;
+            }
+            book.setVersion(expectedVersion + 1);
+            books.put(book.getId(), copy(book));
+            return true;
+        }
+
+        private static Book copy(Book b) {
+            Book copy = new Book(b.getId(), b.getTitle(), b.getCopiesAvailable());
+            copy.setVersion(b.getVersion());
+            return copy;
+        }
+
+        @Override
+        public List<Book> findAll() {
+            return books.values().stream().map(b -> findById(b.getId())).toList();
+        }
+    }
+}
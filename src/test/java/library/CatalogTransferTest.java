@@ -0,0 +1,205 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogTransferTest {
+    private static final int CHUNK = 1 << 18;
+
+    private static CatalogTransfer transfer(IBookRepository bookRepo, IReservationRepository reservationRepo,
+                                            int threads) {
+        return new CatalogTransfer(new ReservationService(bookRepo, reservationRepo),
+                bookRepo, reservationRepo, threads, CHUNK);
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void binaryRoundTripAcrossManyChunksInParallel() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            IBookRepository bookRepo = new ConcurrentBookRepository();
+            IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+            for (int b = 0; b < 20_000; b++) {
+                bookRepo.save(new Book("b" + b, "Title number " + b, b % 7));
+            }
+            for (int u = 0; u < 50_000; u++) {
+                reservationRepo.save(new Reservation("u" + u, "b" + (u % 20_000)));
+            }
+            Path file = dir.resolve("catalog.bin");
+
+            CatalogTransfer.Counts written = transfer(bookRepo, reservationRepo, 4).exportBinary(file);
+            assertEquals(new CatalogTransfer.Counts(20_000, 50_000), written);
+            assertTrue(Files.size(file) > 2 * CHUNK);
+
+            IBookRepository bookRepo2 = new ConcurrentBookRepository();
+            IReservationRepository reservationRepo2 = new ConcurrentReservationRepository();
+            CatalogTransfer.Counts read = transfer(bookRepo2, reservationRepo2, 4).importBinary(file);
+            assertEquals(written, read);
+            assertEquals(20_000, bookRepo2.findAll().size());
+            assertEquals("Title number 12345", bookRepo2.findById("b12345").getTitle());
+            assertEquals(12345 % 7, bookRepo2.findById("b12345").getCopiesAvailable());
+            assertTrue(reservationRepo2.existsByUserAndBook("u49999", "b9999"));
+            assertEquals(3, reservationRepo2.findByBook("b42").size());
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void csvRoundTripKeepsAwkwardFields() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            IReservationRepository reservationRepo = new MemoryReservationRepository();
+            bookRepo.save(new Book("1", "War, and \"Peace\"", 2));
+            bookRepo.save(new Book("2", "Two\nlines", 0));
+            bookRepo.save(new Book("3", "\u010Citanka", 5));
+            reservationRepo.save(new Reservation("Neboj\u0161a", "1"));
+            reservationRepo.save(new Reservation("Alice", "2"));
+            Path file = dir.resolve("catalog.csv");
+
+            CatalogTransfer transfer = transfer(bookRepo, reservationRepo, 1);
+            assertEquals(new CatalogTransfer.Counts(3, 2), transfer.exportCsv(file));
+
+            IBookRepository bookRepo2 = new SearchableBookRepository(new MemoryBookRepository());
+            IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+            assertEquals(new CatalogTransfer.Counts(3, 2),
+                    transfer(bookRepo2, reservationRepo2, 1).importCsv(file));
+            assertEquals("War, and \"Peace\"", bookRepo2.findById("1").getTitle());
+            assertEquals("Two\nlines", bookRepo2.findById("2").getTitle());
+            assertEquals("\u010Citanka", bookRepo2.findById("3").getTitle());
+            assertTrue(reservationRepo2.existsByUserAndBook("Neboj\u0161a", "1"));
+            // saveAll went through the decorator, so the titles are indexed
+            assertEquals(List.of(bookRepo2.findById("1")), ((SearchableBookRepository) bookRepo2).search("peace", 5));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void badFilesAreRejected() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            IReservationRepository reservationRepo = new MemoryReservationRepository();
+            for (int b = 0; b < 1_000; b++) {
+                bookRepo.save(new Book("b" + b, "Title " + b, 1));
+            }
+            CatalogTransfer transfer = transfer(bookRepo, reservationRepo, 1);
+            Path file = dir.resolve("catalog.bin");
+            transfer.exportBinary(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(Files.size(file) - 10);
+            }
+            CatalogTransfer target = transfer(new MemoryBookRepository(), new MemoryReservationRepository(), 1);
+            assertThrows(IOException.class, () -> target.importBinary(file));
+
+            Path csv = dir.resolve("catalog.csv");
+            Files.writeString(csv, "book,1,Title,3\nshelf,1\n");
+            assertThrows(IOException.class, () -> target.importBinary(csv));
+            assertThrows(IOException.class, () -> target.importCsv(csv));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void waitingListsAndTiersSurviveBothFormats() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            IReservationRepository reservationRepo = new MemoryReservationRepository();
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            bookRepo.save(new Book("1", "Popular Book", 1));
+            service.reserve("Holder", "1");
+            service.tryReserve("Student", "1", ReservationTier.GENERAL);
+            service.tryReserve("Lecturer", "1", ReservationTier.STAFF);
+            service.tryReserve("Latecomer", "1", ReservationTier.GENERAL);
+            CatalogTransfer transfer = new CatalogTransfer(service, bookRepo, reservationRepo);
+            Path binary = dir.resolve("catalog.bin");
+            Path csv = dir.resolve("catalog.csv");
+            assertEquals(new CatalogTransfer.Counts(1, 4, 3), transfer.exportBinary(binary));
+            assertEquals(new CatalogTransfer.Counts(1, 4, 3), transfer.exportCsv(csv));
+
+            for (Path file : List.of(binary, csv)) {
+                IBookRepository bookRepo2 = new MemoryBookRepository();
+                IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+                ReservationService service2 = new ReservationService(bookRepo2, reservationRepo2);
+                CatalogTransfer target = new CatalogTransfer(service2, bookRepo2, reservationRepo2);
+                CatalogTransfer.Counts read = file == binary ? target.importBinary(file) : target.importCsv(file);
+                assertEquals(new CatalogTransfer.Counts(1, 4, 3), read);
+                assertEquals(service.waitingUsers("1"), service2.waitingUsers("1"));
+
+                // the freed copy goes to the queue, not back on the shelf
+                service2.cancel("Holder", "1");
+                assertEquals(0, bookRepo2.findById("1").getCopiesAvailable());
+                assertEquals(2, service2.waitingListLength("1"));
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void failingWorkerStopsTheImportEarly() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            for (int b = 0; b < 50_000; b++) {
+                bookRepo.save(new Book("b" + b, "A rather long title for book number " + b, 1));
+            }
+            Path file = dir.resolve("catalog.bin");
+            transfer(bookRepo, new MemoryReservationRepository(), 1).exportBinary(file);
+            assertTrue(Files.size(file) > 8 * CHUNK);
+
+            AtomicInteger saves = new AtomicInteger();
+            IBookRepository failing = new ConcurrentBookRepository() {
+                @Override
+                public void saveAll(Collection<Book> books) {
+                    saves.incrementAndGet();
+                    throw new IllegalStateException("Disk full");
+                }
+            };
+            CatalogTransfer target = transfer(failing, new ConcurrentReservationRepository(), 2);
+            assertThrows(IllegalStateException.class, () -> target.importBinary(file));
+            // no more than the chunks already in flight when the first one failed
+            assertTrue(saves.get() <= 4, saves.get() + " chunks saved");
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    void hugeChunkSizeInHeaderIsRejectedBeforeAllocating() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        try {
+            Path file = dir.resolve("catalog.bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.write(java.nio.ByteBuffer.allocate(12).putInt(0x4C494243).putInt(2).putInt(1 << 30).flip());
+            }
+            CatalogTransfer target = transfer(new MemoryBookRepository(), new MemoryReservationRepository(), 1);
+            assertThrows(IOException.class, () -> target.importBinary(file));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CombiningReservationServiceTest {
+
+    @Test
+    void burstOnOneBookHandsOutEachCopyOnce() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        Book book = new Book("1", "New Release", 100);
+        bookRepo.save(book);
+        CombiningReservationService combining = new CombiningReservationService(
+                new ReservationService(bookRepo, reservationRepo));
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<ReservationOutcome>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String userId = "User" + i;
+            futures.add(pool.submit(() -> combining.tryReserve(userId, "1")));
+        }
+        int reserved = 0;
+        for (Future<ReservationOutcome> f : futures) {
+            ReservationOutcome outcome = f.get();
+            if (outcome.getStatus() == ReservationStatus.RESERVED) {
+                reserved++;
+            } else {
+                assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, outcome.getStatus());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(100, reserved);
+        assertEquals(0, book.getCopiesAvailable());
+        assertEquals(100, reservationRepo.findByBook("1").size());
+        assertTrue(combining.getAverageBatchSize() >= 1);
+    }
+
+    @Test
+    void waitingCallersAreAppliedAsOneBatch() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        bookRepo.save(new Book("1", "New Release", 10));
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        CombiningReservationService combining = new CombiningReservationService(service);
+
+        // the first reservation holds the combiner role until released
+        CountDownLatch release = new CountDownLatch(1);
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onReserved(String userId, String bookId) {
+                if (userId.equals("First")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        Thread first = new Thread(() -> combining.tryReserve("First", "1"));
+        first.start();
+        while (combining.getBatchCount() == 0 && first.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        List<Thread> others = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String userId = "User" + i;
+            Thread t = new Thread(() -> combining.tryReserve(userId, "1"));
+            others.add(t);
+            t.start();
+        }
+        for (Thread t : others) {
+            while (t.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        first.join();
+        for (Thread t : others) {
+            t.join();
+        }
+
+        assertEquals(2, combining.getBatchCount());
+        assertEquals(3.0, combining.getAverageBatchSize());
+        assertEquals(4, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void outcomesMatchThePlainService() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        CombiningReservationService combining = new CombiningReservationService(
+                new ReservationService(bookRepo, reservationRepo));
+
+        combining.reserve("Alice", "1");
+        assertThrows(IllegalStateException.class, () -> combining.reserve("Alice", "1"));
+        assertThrows(IllegalArgumentException.class, () -> combining.reserve("Alice", "2"));
+        assertEquals(ReservationStatus.WAITLISTED, combining.tryReservePriority("Bob", "1").getStatus());
+        assertEquals(ReservationStatus.WAITLISTED,
+                combining.tryReserve("Carol", "1", ReservationTier.GENERAL).getStatus());
+
+        combining.cancel("Alice", "1");
+        assertThrows(IllegalArgumentException.class, () -> combining.cancel("Alice", "1"));
+        assertEquals(ReservationStatus.CANCELLED, combining.tryCancel("Bob", "1").getStatus());
+        assertTrue(reservationRepo.existsByUserAndBook("Carol", "1"));
+        assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void interruptedWaiterParksAndKeepsItsFlag() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        bookRepo.save(new Book("1", "New Release", 10));
+        ReservationService service = new ReservationService(bookRepo, new ConcurrentReservationRepository());
+        CombiningReservationService combining = new CombiningReservationService(service);
+        CountDownLatch release = new CountDownLatch(1);
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onReserved(String userId, String bookId) {
+                if (userId.equals("First")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        Thread first = new Thread(() -> combining.tryReserve("First", "1"));
+        first.start();
+        while (first.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        AtomicBoolean flagKept = new AtomicBoolean();
+        List<ReservationOutcome> outcome = new ArrayList<>();
+        Thread waiter = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            outcome.add(combining.tryReserve("Second", "1"));
+            flagKept.set(Thread.currentThread().isInterrupted());
+        });
+        waiter.start();
+        // parked, not spinning on the interrupt
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join();
+        waiter.join();
+
+        assertEquals(ReservationStatus.RESERVED, outcome.get(0).getStatus());
+        assertTrue(flagKept.get());
+        // both queues drained, so no combiner is left behind
+        assertEquals(0, combining.getCombinerCount());
+    }
+
+    @Test
+    void errorInABatchReachesEveryCallerInIt() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        bookRepo.save(new Book("1", "New Release", 10));
+        ReservationService service = new ReservationService(bookRepo, new ConcurrentReservationRepository());
+        CombiningReservationService combining = new CombiningReservationService(service);
+        CountDownLatch release = new CountDownLatch(1);
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onReserved(String userId, String bookId) {
+                if (userId.equals("First")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (userId.equals("Boom")) {
+                    throw new StackOverflowError();
+                }
+            }
+        });
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Thread first = new Thread(() -> {
+            try {
+                combining.tryReserve("First", "1");
+            } catch (Throwable e) {
+                failures.put("First", e);
+            }
+        });
+        first.start();
+        while (first.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        // First's thread drains everyone queued behind it into its next batch
+        List<Thread> others = new ArrayList<>();
+        for (String userId : List.of("Boom", "User1", "User2", "User3")) {
+            Thread t = new Thread(() -> {
+                try {
+                    combining.tryReserve(userId, "1");
+                } catch (Throwable e) {
+                    failures.put(userId, e);
+                }
+            });
+            others.add(t);
+            t.start();
+        }
+        for (Thread t : others) {
+            while (t.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        first.join();
+        for (Thread t : others) {
+            t.join(10_000);
+            assertFalse(t.isAlive());
+        }
+
+        // the combining thread gets the Error as well as the callers it stranded
+        assertEquals(5, failures.size());
+        for (Throwable failure : failures.values()) {
+            assertTrue(failure instanceof StackOverflowError);
+        }
+    }
+
+    @Test
+    void idleCombinersAreDropped() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        CombiningReservationService combining = new CombiningReservationService(
+                new ReservationService(bookRepo, new MemoryReservationRepository()));
+        for (int i = 0; i < 100; i++) {
+            bookRepo.save(new Book(String.valueOf(i), "Book " + i, 1));
+            combining.reserve("Alice", String.valueOf(i));
+            combining.cancel("Alice", String.valueOf(i));
+        }
+        assertEquals(0, combining.getCombinerCount());
+    }
+}
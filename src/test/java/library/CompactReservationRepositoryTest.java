@@ -0,0 +1,85 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactReservationRepositoryTest {
+
+    @Test
+    void behavesLikeIndexedRepositoryUnderRandomOperations() {
+        IReservationRepository compact = new CompactReservationRepository(16);
+        IReservationRepository indexed = new IndexedReservationRepository();
+        Random random = new Random(42);
+
+        // small id space so saves, duplicates and deletes collide a lot
+        for (int i = 0; i < 20_000; i++) {
+            String userId = "User" + random.nextInt(50);
+            String bookId = "Book" + random.nextInt(50);
+            if (random.nextInt(3) == 0) {
+                compact.delete(userId, bookId);
+                indexed.delete(userId, bookId);
+            } else if (!indexed.existsByUserAndBook(userId, bookId)) {
+                compact.save(new Reservation(userId, bookId));
+                indexed.save(new Reservation(userId, bookId));
+            }
+            assertEquals(indexed.existsByUserAndBook(userId, bookId), compact.existsByUserAndBook(userId, bookId));
+        }
+
+        // deletes swap entries around, so compare contents, not order
+        for (int n = 0; n < 50; n++) {
+            assertEquals(bookIds(indexed.findByUser("User" + n)), bookIds(compact.findByUser("User" + n)));
+            assertEquals(userIds(indexed.findByBook("Book" + n)), userIds(compact.findByBook("Book" + n)));
+        }
+    }
+
+    @Test
+    void idsAreReleasedWithTheirLastReservation() {
+        CompactReservationRepository repo = new CompactReservationRepository();
+        for (int i = 0; i < 1_000; i++) {
+            repo.save(new Reservation("User" + i, "Book" + (i % 10)));
+        }
+        assertEquals(1_010, repo.internedCount());
+
+        for (int i = 0; i < 1_000; i += 2) {
+            repo.delete("User" + i, "Book" + (i % 10));
+        }
+        // the even books lost every reservation
+        assertEquals(505, repo.internedCount());
+        assertTrue(repo.findByBook("Book0").isEmpty());
+        assertEquals(100, repo.findByBook("Book1").size());
+
+        // freed handles are reused without mixing up the survivors
+        repo.save(new Reservation("Newcomer", "Book0"));
+        assertTrue(repo.existsByUserAndBook("Newcomer", "Book0"));
+        assertFalse(repo.existsByUserAndBook("User0", "Book0"));
+        assertTrue(repo.existsByUserAndBook("User1", "Book1"));
+        assertEquals(List.of("Book1"), bookIds(repo.findByUser("User1")));
+        assertEquals(507, repo.internedCount());
+    }
+
+    @Test
+    void unknownIdsAreNotReserved() {
+        IReservationRepository repo = new CompactReservationRepository();
+        repo.save(new Reservation("Nebojsa", "1"));
+
+        assertFalse(repo.existsByUserAndBook("Nebojsa", "2"));
+        assertFalse(repo.existsByUserAndBook("Alice", "1"));
+        assertTrue(repo.findByUser("Alice").isEmpty());
+
+        // deleting something that does not exist changes nothing
+        repo.delete("Alice", "1");
+        assertEquals(1, repo.findByBook("1").size());
+    }
+
+    private static List<String> bookIds(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getBookId).sorted().toList();
+    }
+
+    private static List<String> userIds(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getUserId).sorted().toList();
+    }
+}
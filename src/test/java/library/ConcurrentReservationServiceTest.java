@@ -0,0 +1,88 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentReservationServiceTest {
+
+    @Test
+    void concurrentReservesNeverOversellABook() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        // 50 copies, 400 users racing for them
+        Book book = new Book("1", "Hot New Release", 50);
+        bookRepo.save(book);
+
+        AtomicInteger reserved = new AtomicInteger();
+        runConcurrently(400, i -> {
+            try {
+                service.reserve("User" + i, "1");
+                reserved.incrementAndGet();
+            } catch (IllegalStateException expected) {
+                // No copies available
+            }
+        });
+
+        assertEquals(50, reserved.get());
+        assertEquals(0, book.getCopiesAvailable());
+        assertEquals(50, service.listReservationsForBook("1").size());
+    }
+
+    @Test
+    void concurrentReserveAndCancelOnDifferentBooksKeepCountsConsistent() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        for (int b = 0; b < 8; b++) {
+            bookRepo.save(new Book(String.valueOf(b), "Book " + b, 100));
+        }
+
+        // every user reserves and then cancels one book, so all copies come back
+        runConcurrently(800, i -> {
+            String bookId = String.valueOf(i % 8);
+            service.reserve("User" + i, bookId);
+            service.cancel("User" + i, bookId);
+        });
+
+        for (int b = 0; b < 8; b++) {
+            assertEquals(100, bookRepo.findById(String.valueOf(b)).getCopiesAvailable());
+            assertTrue(service.listReservationsForBook(String.valueOf(b)).isEmpty());
+        }
+    }
+
+    private static void runConcurrently(int tasks, IntTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run(n);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+    }
+
+    private interface IntTask {
+        void run(int i) throws Exception;
+    }
+}
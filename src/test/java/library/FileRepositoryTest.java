@@ -0,0 +1,68 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileRepositoryTest {
+
+    @Test
+    void stateSurvivesReopen() throws Exception {
+        Path dir = Files.createTempDirectory("library");
+        Path books = dir.resolve("books.log");
+        Path reservations = dir.resolve("reservations.log");
+
+        try (FileBookRepository bookRepo = new FileBookRepository(books);
+             FileReservationRepository reservationRepo = new FileReservationRepository(reservations)) {
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            bookRepo.save(new Book("1", "The Bible", 10));
+            bookRepo.save(new Book("2", "Java Programming", 5));
+
+            service.reserve("Nebojsa", "1");
+            service.reserve("Alice", "1");
+            service.reserve("Nebojsa", "2");
+            service.cancel("Alice", "1");
+        }
+
+        // "restart" - everything is rebuilt from the logs
+        try (FileBookRepository bookRepo = new FileBookRepository(books);
+             FileReservationRepository reservationRepo = new FileReservationRepository(reservations)) {
+            assertEquals(9, bookRepo.findById("1").getCopiesAvailable());
+            assertEquals(4, bookRepo.findById("2").getCopiesAvailable());
+            assertEquals("The Bible", bookRepo.findById("1").getTitle());
+
+            assertTrue(reservationRepo.existsByUserAndBook("Nebojsa", "1"));
+            assertTrue(reservationRepo.existsByUserAndBook("Nebojsa", "2"));
+            assertFalse(reservationRepo.existsByUserAndBook("Alice", "1"));
+            assertEquals(2, reservationRepo.findByUser("Nebojsa").size());
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveReservations() throws Exception {
+        Path file = Files.createTempDirectory("library").resolve("reservations.log");
+
+        try (FileReservationRepository repo = new FileReservationRepository(file)) {
+            repo.save(new Reservation("Keeper", "1"));
+            // 20,001 records without compaction; it runs each time the log
+            // reaches 10,000, the last time on the final delete
+            for (int i = 0; i < 10_000; i++) {
+                repo.save(new Reservation("User" + i, "2"));
+                repo.delete("User" + i, "2");
+            }
+        }
+
+        try (AppendOnlyLog log = new AppendOnlyLog(file, 1)) {
+            assertEquals(1, log.recordCount());
+        }
+        try (FileReservationRepository repo = new FileReservationRepository(file)) {
+            assertEquals(List.of("1"), repo.findByUser("Keeper").stream().map(Reservation::getBookId).toList());
+            assertTrue(repo.findByBook("2").isEmpty());
+            assertFalse(repo.existsByUserAndBook("User9999", "2"));
+        }
+    }
+}
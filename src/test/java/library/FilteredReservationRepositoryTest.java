@@ -0,0 +1,69 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilteredReservationRepositoryTest {
+
+    @Test
+    void filterAnswersMissesAndSupportsDeletes() {
+        IReservationRepository backing = new MemoryReservationRepository();
+        FilteredReservationRepository repo = new FilteredReservationRepository(backing, 10_000, 0.01);
+
+        for (int i = 0; i < 5_000; i++) {
+            repo.save(new Reservation("User" + i, "1"));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(repo.existsByUserAndBook("User" + i, "1"), "no false negatives");
+        }
+        for (int i = 0; i < 2_500; i++) {
+            repo.delete("User" + i, "1");
+        }
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i >= 2_500, repo.existsByUserAndBook("User" + i, "1"));
+        }
+
+        // lookups for pairs that were never saved
+        for (int i = 0; i < 20_000; i++) {
+            assertFalse(repo.existsByUserAndBook("Stranger" + i, "2"));
+        }
+        assertTrue(repo.getDefiniteMissCount() > 20_000 * 0.9);
+        assertTrue(repo.getFalsePositiveRate() < 0.03, "observed " + repo.getFalsePositiveRate());
+        assertTrue(repo.getExpectedFalsePositiveRate() < 0.01);
+    }
+
+    @Test
+    void bulkLookupsOnlyAskTheBackingStoreForCandidates() {
+        FilteredReservationRepository repo =
+                new FilteredReservationRepository(new MemoryReservationRepository(), 1_000, 0.001);
+        repo.saveAll(List.of(new Reservation("Nebojsa", "1"), new Reservation("Alice", "1")));
+
+        assertEquals(Set.of("Nebojsa"), repo.findReservedUsers("1", List.of("Nebojsa", "Bob", "Carol")));
+        repo.deleteAll("1", List.of("Nebojsa", "Bob"));
+        assertFalse(repo.existsByUserAndBook("Nebojsa", "1"));
+        assertTrue(repo.existsByUserAndBook("Alice", "1"));
+    }
+
+    @Test
+    void seededFilterWorksBehindTheService() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository backing = new MemoryReservationRepository();
+        backing.save(new Reservation("Nebojsa", "1"));
+        FilteredReservationRepository repo = new FilteredReservationRepository(backing, 1_000, 0.01);
+        repo.seed(backing.findByBook("1"));
+        ReservationService service = new ReservationService(bookRepo, repo);
+        bookRepo.save(new Book("1", "The Bible", 10));
+
+        Exception exception = assertThrows(IllegalStateException.class, () -> service.reserve("Nebojsa", "1"));
+        assertEquals("The user already reserved this book", exception.getMessage());
+
+        service.reserve("Alice", "1");
+        service.cancel("Alice", "1");
+        service.reserve("Alice", "1");
+        assertEquals(9, bookRepo.findById("1").getCopiesAvailable());
+    }
+}
@@ -0,0 +1,158 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HoldExpiryEngineTest {
+
+    @Test
+    void expiredHoldReleasesCopyOrPromotesNextUser() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        AtomicLong now = new AtomicLong(1_000_000);
+        HoldExpiryEngine holds = new HoldExpiryEngine(service, 60_000, 100, now::get);
+
+        Book book = new Book("1", "Popular Book", 1);
+        bookRepo.save(book);
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+
+        // nothing expires before the TTL
+        now.addAndGet(59_000);
+        assertEquals(0, holds.expireDue());
+        assertTrue(reservationRepo.existsByUserAndBook("RegularUser", "1"));
+
+        // RegularUser's hold runs out - the copy goes to PriorityUser1
+        now.addAndGet(2_000);
+        assertEquals(1, holds.expireDue());
+        assertFalse(reservationRepo.existsByUserAndBook("RegularUser", "1"));
+        assertEquals(0, service.waitingListLength("1"));
+        assertEquals(0, book.getCopiesAvailable());
+
+        // PriorityUser1 got a fresh hold when promoted, which expires too
+        assertEquals(now.get() + 60_000, holds.expiresAt("PriorityUser1", "1"), 100);
+        now.addAndGet(61_000);
+        holds.expireDue();
+        assertEquals(1, book.getCopiesAvailable());
+        assertEquals(2, holds.getExpiredCount());
+    }
+
+    @Test
+    void cancellingRemovesTheHold() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        AtomicLong now = new AtomicLong(0);
+        HoldExpiryEngine holds = new HoldExpiryEngine(service, 1_000, 10, now::get);
+
+        bookRepo.save(new Book("1", "The Bible", 10));
+        service.reserve("Nebojsa", "1");
+        assertEquals(1, holds.getPendingHolds());
+
+        service.cancel("Nebojsa", "1");
+        assertEquals(0, holds.getPendingHolds());
+        assertEquals(-1, holds.expiresAt("Nebojsa", "1"));
+    }
+
+    @Test
+    void holdReservedAgainAfterTheWheelFiredIsKept() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        AtomicLong now = new AtomicLong(0);
+        HoldExpiryEngine holds = new HoldExpiryEngine(service, 1_000, 10, now::get);
+        bookRepo.save(new Book("1", "The Bible", 10));
+        service.reserve("Alice", "1");
+        service.reserve("Bob", "1");
+
+        // whichever expires first makes the other cancel and reserve again
+        // before expireDue gets to their already fired hold
+        AtomicLong renewed = new AtomicLong();
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onCancelled(String userId, String bookId, boolean wasWaiting) {
+                if (renewed.getAndIncrement() == 0) {
+                    String other = userId.equals("Alice") ? "Bob" : "Alice";
+                    service.cancel(other, bookId);
+                    service.reserve(other, bookId);
+                }
+            }
+        });
+        now.set(2_000);
+        assertEquals(1, holds.expireDue());
+        assertEquals(1, holds.getExpiredCount());
+        assertEquals(1, reservationRepo.findByBook("1").size());
+        String kept = reservationRepo.findByBook("1").get(0).getUserId();
+        assertEquals(3_000, holds.expiresAt(kept, "1"));
+    }
+
+    @Test
+    void restoredReservationsCanBeArmed() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        service.reserve("Holder", "1");
+        service.reservePriority("Waiter", "1");
+
+        // made before the engine existed, as after a recovery
+        AtomicLong now = new AtomicLong(0);
+        HoldExpiryEngine holds = new HoldExpiryEngine(service, 1_000, 10, now::get);
+        assertEquals(0, holds.getPendingHolds());
+        assertEquals(1, holds.armRestored(service.streamReservationsForBook("1")));
+        assertEquals(0, holds.armRestored(service.streamReservationsForBook("1")));
+        assertEquals(1_000, holds.expiresAt("Holder", "1"));
+
+        now.set(1_000);
+        assertEquals(1, holds.expireDue());
+        assertEquals(List.of("Waiter"), service.streamReservationsForBook("1").map(Reservation::getUserId).toList());
+    }
+
+    @Test
+    void timerWheelFiresEveryTimerOnTimeAcrossLevels() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(1, 0);
+        Random random = new Random(3);
+        long[] deadlines = new long[5_000];
+        for (int i = 0; i < deadlines.length; i++) {
+            // spread over all four levels, up to ~17M ticks
+            deadlines[i] = 1 + (long) Math.pow(random.nextDouble(), 4) * 16_000_000L;
+            wheel.schedule(i, deadlines[i]);
+        }
+        // cancel every tenth one
+        for (int i = 0; i < deadlines.length; i += 10) {
+            assertTrue(wheel.cancel(i));
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        long now = 0;
+        while (wheel.size() > 0) {
+            now += 997;
+            for (int key : wheel.advanceTo(now)) {
+                // fired in the step that crossed its deadline, never early
+                assertTrue(deadlines[key] <= now && deadlines[key] > now - 997, "timer " + key);
+                fired.add(key);
+            }
+        }
+        assertEquals(deadlines.length - deadlines.length / 10, fired.size());
+    }
+
+    @Test
+    void timerWheelJumpsIdleStretchesInOneStep() {
+        TimerWheel<String> wheel = new TimerWheel<>(1, 0);
+        wheel.schedule("later", 10_000_001);
+        wheel.schedule("soon", 70);
+        wheel.schedule("far", 10_000_000);
+
+        assertEquals(List.of(), wheel.advanceTo(69));
+        assertEquals(List.of("soon"), wheel.advanceTo(9_999_999));
+        assertEquals(List.of("far"), wheel.advanceTo(10_000_000));
+        assertEquals(List.of("later"), wheel.advanceTo(Long.MAX_VALUE / 2));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,176 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotentReservationTest {
+
+    @Test
+    void retriesGetTheOriginalOutcome() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Popular Book", 2));
+        AtomicInteger reserved = new AtomicInteger();
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onReserved(String userId, String bookId) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(ReservationStatus.RESERVED, service.reserveIdempotent("req-1", "Alice", "1").getStatus());
+        // a plain retry would fail with ALREADY_RESERVED
+        assertEquals(ReservationStatus.RESERVED, service.reserveIdempotent("req-1", "Alice", "1").getStatus());
+        assertEquals(1, reserved.get());
+        assertEquals(1, bookRepo.findById("1").getCopiesAvailable());
+
+        assertEquals(ReservationStatus.CANCELLED, service.cancelIdempotent("req-2", "Alice", "1").getStatus());
+        assertEquals(ReservationStatus.CANCELLED, service.cancelIdempotent("req-2", "Alice", "1").getStatus());
+        assertEquals(2, bookRepo.findById("1").getCopiesAvailable());
+        assertEquals(2, service.getReplayedRequestCount());
+
+        // a new id is a new request
+        assertEquals(ReservationStatus.NO_RESERVATION, service.cancelIdempotent("req-3", "Alice", "1").getStatus());
+        assertThrows(IllegalArgumentException.class, () -> service.reserveIdempotent("req-1", "Bob", "1"));
+        // the same id can't be replayed as the other operation
+        assertThrows(IllegalArgumentException.class, () -> service.cancelIdempotent("req-1", "Alice", "1"));
+        assertThrows(IllegalArgumentException.class, () -> service.reserveIdempotent("req-2", "Alice", "1"));
+    }
+
+    @Test
+    void idsAreForgottenAfterTheWindow() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        IBookRepository bookRepo = new MemoryBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        service.setDeduplicationWindow(new DeduplicationWindow(8_000, 1_000, now::get));
+        bookRepo.save(new Book("1", "Popular Book", 2));
+
+        service.reserveIdempotent("req-1", "Alice", "1");
+        now.addAndGet(6_999);
+        assertEquals(ReservationStatus.RESERVED, service.reserveIdempotent("req-1", "Alice", "1").getStatus());
+        now.addAndGet(1_001);
+        assertEquals(ReservationStatus.ALREADY_RESERVED, service.reserveIdempotent("req-1", "Alice", "1").getStatus());
+    }
+
+    @Test
+    void memoryStaysBoundedUnderManyIds() {
+        AtomicLong now = new AtomicLong(0);
+        DeduplicationWindow window = new DeduplicationWindow(60_000, 800, now::get);
+        for (int i = 0; i < 10_000; i++) {
+            String userId = "u" + i;
+            window.run("req-" + i, false, userId, "1", () -> new ReservationOutcome(userId, "1", ReservationStatus.RESERVED));
+            assertTrue(window.size() <= 800);
+        }
+        // the newest ids are still remembered
+        ReservationOutcome replay = window.run("req-9999", false, "u9999", "1", () -> {
+            throw new AssertionError("should be a replay");
+        });
+        assertEquals(ReservationStatus.RESERVED, replay.getStatus());
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Popular Book", 5));
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onReserved(String userId, String bookId) {
+                reserved.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<ReservationOutcome>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> service.reserveIdempotent("req-1", "Alice", "1")));
+        }
+        while (reserved.get() == 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+        release.countDown();
+        for (Future<ReservationOutcome> f : futures) {
+            assertEquals(ReservationStatus.RESERVED, f.get().getStatus());
+        }
+        pool.shutdown();
+        assertEquals(1, reserved.get());
+        assertEquals(4, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void conflictsAreNotRemembered() {
+        DeduplicationWindow window = new DeduplicationWindow(60_000, 800);
+        ReservationOutcome first = window.run("req-1", false, "Alice", "1",
+                () -> new ReservationOutcome("Alice", "1", ReservationStatus.CONFLICT));
+        assertEquals(ReservationStatus.CONFLICT, first.getStatus());
+        ReservationOutcome retry = window.run("req-1", false, "Alice", "1",
+                () -> new ReservationOutcome("Alice", "1", ReservationStatus.RESERVED));
+        assertEquals(ReservationStatus.RESERVED, retry.getStatus());
+        assertEquals(0, window.getReplayCount());
+    }
+
+    @Test
+    void failedRequestsAreNotRemembered() {
+        AtomicInteger failures = new AtomicInteger(1);
+        IBookRepository bookRepo = new MemoryBookRepository() {
+            @Override
+            public Book findById(String id) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Repository unavailable");
+                }
+                return super.findById(id);
+            }
+        };
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        bookRepo.save(new Book("1", "Popular Book", 1));
+
+        assertThrows(IllegalStateException.class, () -> service.reserveIdempotent("req-1", "Alice", "1"));
+        assertEquals(ReservationStatus.RESERVED, service.reserveIdempotent("req-1", "Alice", "1").getStatus());
+        assertEquals(0, service.getReplayedRequestCount());
+    }
+
+    @Test
+    void requestsFailingWithAnErrorAreNotRemembered() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        IBookRepository bookRepo = new MemoryBookRepository() {
+            @Override
+            public Book findById(String id) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new OutOfMemoryError("Simulated");
+                }
+                return super.findById(id);
+            }
+        };
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        bookRepo.save(new Book("1", "Popular Book", 1));
+
+        assertThrows(OutOfMemoryError.class, () -> service.reserveIdempotent("req-1", "Alice", "1"));
+        // the retry runs instead of waiting on the failed attempt
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<ReservationOutcome> retry = pool.submit(() -> service.reserveIdempotent("req-1", "Alice", "1"));
+        assertEquals(ReservationStatus.RESERVED, retry.get(10, TimeUnit.SECONDS).getStatus());
+        pool.shutdown();
+        assertEquals(0, service.getReplayedRequestCount());
+    }
+}
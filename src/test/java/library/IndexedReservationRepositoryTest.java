@@ -0,0 +1,59 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedReservationRepositoryTest {
+
+    @Test
+    void findByUserAndBookMatchMemoryRepository() {
+        IReservationRepository memory = new MemoryReservationRepository();
+        IReservationRepository indexed = new IndexedReservationRepository();
+
+        // Same reservations saved into both repos, in the same order.
+        String[][] pairs = {{"Nebojsa", "1"}, {"Alice", "1"}, {"Nebojsa", "2"}, {"Bob", "3"}, {"Alice", "2"}};
+        for (String[] p : pairs) {
+            Reservation r = new Reservation(p[0], p[1]);
+            memory.save(r);
+            indexed.save(r);
+        }
+
+        assertEquals(memory.findByUser("Nebojsa"), indexed.findByUser("Nebojsa"));
+        assertEquals(memory.findByUser("Alice"), indexed.findByUser("Alice"));
+        assertEquals(memory.findByBook("1"), indexed.findByBook("1"));
+        assertEquals(memory.findByBook("2"), indexed.findByBook("2"));
+        assertTrue(indexed.findByUser("Nobody").isEmpty());
+
+        // delete removes the reservation from every index.
+        memory.delete("Alice", "1");
+        indexed.delete("Alice", "1");
+        assertFalse(indexed.existsByUserAndBook("Alice", "1"));
+        assertTrue(indexed.existsByUserAndBook("Alice", "2"));
+        assertEquals(memory.findByUser("Alice"), indexed.findByUser("Alice"));
+        assertEquals(memory.findByBook("1"), indexed.findByBook("1"));
+    }
+
+    @Test
+    void serviceWorksWithIndexedRepository() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new IndexedReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        Book book = new Book("1", "The Bible", 2);
+        bookRepo.save(book);
+
+        service.reserve("Nebojsa", "1");
+        service.reserve("Alice", "1");
+        assertEquals(0, book.getCopiesAvailable());
+
+        service.cancel("Nebojsa", "1");
+        assertEquals(1, book.getCopiesAvailable());
+
+        List<Reservation> reservations = service.listReservationsForBook("1");
+        assertEquals(1, reservations.size());
+        assertEquals("Alice", reservations.get(0).getUserId());
+    }
+}
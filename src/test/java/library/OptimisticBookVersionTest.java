@@ -0,0 +1,238 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OptimisticBookVersionTest {
+
+    @Test
+    void conditionalSaveRejectsStaleVersions() {
+        IBookRepository bookRepo = new SharedBookStore();
+        bookRepo.save(new Book("1", "The Bible", 10));
+
+        Book a = bookRepo.findById("1");
+        Book b = bookRepo.findById("1");
+        a.setCopiesAvailable(9);
+        assertTrue(bookRepo.saveIfVersion(a, 0));
+        assertEquals(1, a.getVersion());
+
+        b.setCopiesAvailable(9);
+        assertFalse(bookRepo.saveIfVersion(b, 0));
+        assertEquals(9, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void sameInstanceAlwaysSaves() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        Book book = new Book("1", "The Bible", 10);
+        bookRepo.save(book);
+
+        assertTrue(bookRepo.saveIfVersion(book, 0));
+        // changes through the stored instance are already in place
+        assertTrue(bookRepo.saveIfVersion(book, 0));
+        assertEquals(2, book.getVersion());
+    }
+
+    @Test
+    void instancesSharingARepositoryNeverOversell() throws Exception {
+        IBookRepository bookRepo = new SharedBookStore();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        bookRepo.save(new Book("1", "Popular Book", 50));
+
+        int instances = 8;
+        int perInstance = 20;
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(instances);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < instances; n++) {
+            // each instance has its own locks, so only the version check protects the book
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            int instance = n;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perInstance; i++) {
+                    ReservationOutcome outcome = service.tryReserve("User" + instance + "-" + i, "1");
+                    if (outcome.getStatus() == ReservationStatus.RESERVED) {
+                        reserved.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertTrue(reserved.get() > 0);
+        assertEquals(50 - reserved.get(), bookRepo.findById("1").getCopiesAvailable());
+        assertEquals(reserved.get(), reservationRepo.findByBook("1").size());
+    }
+
+    @Test
+    void cancelsFromSeveralInstancesAllReturnTheirCopy() throws Exception {
+        IBookRepository bookRepo = new SharedBookStore();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        bookRepo.save(new Book("1", "The Bible", 100));
+        ReservationService setup = new ReservationService(bookRepo, reservationRepo);
+        for (int i = 0; i < 100; i++) {
+            setup.reserve("User" + i, "1");
+        }
+        assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            int first = n * 25;
+            futures.add(pool.submit(() -> {
+                for (int i = first; i < first + 25; i++) {
+                    service.cancel("User" + i, "1");
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(100, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void losingTheLastCopyIsNoCopiesNotConflict() {
+        RacingBookStore bookRepo = new RacingBookStore();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        bookRepo.raceBeforeNextSave(0);
+        assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, service.tryReserve("Alice", "1").getStatus());
+        assertFalse(reservationRepo.existsByUserAndBook("Alice", "1"));
+
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        bookRepo.raceBeforeNextSave(0);
+        assertEquals(ReservationStatus.WAITLISTED, service.tryReservePriority("Bob", "1").getStatus());
+        assertEquals(0, service.waitingPosition("Bob", "1"));
+        assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+    }
+
+    @Test
+    void batchKeepsTheCopiesThatAreLeft() {
+        RacingBookStore bookRepo = new RacingBookStore();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        bookRepo.save(new Book("1", "Popular Book", 3));
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        // another instance takes two of the three copies mid-batch
+        bookRepo.raceBeforeNextSave(1);
+        List<ReservationOutcome> outcomes = service.reserveAll(List.of(
+                new ReservationRequest("A", "1"), new ReservationRequest("B", "1"),
+                new ReservationRequest("C", "1", ReservationTier.COURSE)));
+        assertEquals(ReservationStatus.RESERVED, outcomes.get(0).getStatus());
+        assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, outcomes.get(1).getStatus());
+        assertEquals(ReservationStatus.WAITLISTED, outcomes.get(2).getStatus());
+        assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+        assertEquals(2, reservationRepo.findByBook("1").size());
+    }
+
+    @Test
+    void cancelOutlastsAnyNumberOfConflicts() {
+        RacingBookStore bookRepo = new RacingBookStore();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        service.reserve("Alice", "1");
+
+        bookRepo.failNextSaves(25);
+        service.cancel("Alice", "1");
+        assertEquals(1, bookRepo.findById("1").getCopiesAvailable());
+        assertFalse(reservationRepo.existsByUserAndBook("Alice", "1"));
+    }
+
+    // SharedBookStore where another instance can sneak in before a conditional save
+    private static class RacingBookStore extends SharedBookStore {
+        private Integer raceCopies;
+        private int failures;
+
+        void raceBeforeNextSave(int copies) {
+            raceCopies = copies;
+        }
+
+        // bumps the version without touching copies, like unrelated writes
+        void failNextSaves(int n) {
+            failures = n;
+        }
+
+        @Override
+        public boolean saveIfVersion(Book book, long expectedVersion) {
+            if (raceCopies != null) {
+                Book other = findById(book.getId());
+                other.setCopiesAvailable(raceCopies);
+                raceCopies = null;
+                super.saveIfVersion(other, other.getVersion());
+            }
+            if (failures > 0) {
+                failures--;
+                Book other = findById(book.getId());
+                super.saveIfVersion(other, other.getVersion());
+            }
+            return super.saveIfVersion(book, expectedVersion);
+        }
+    }
+
+    // Thread-safe store that hands out copies, like a database shared by several servers
+    private static class SharedBookStore implements IBookRepository {
+        private final Map<String, Book> books = new ConcurrentHashMap<>();
+
+        @Override
+        public Book findById(String id) {
+            Book b = books.get(id);
+            return b == null ? null : copy(b);
+        }
+
+        @Override
+        public void save(Book book) {
+            books.put(book.getId(), copy(book));
+        }
+
+        @Override
+        public boolean saveIfVersion(Book book, long expectedVersion) {
+            boolean[] saved = new boolean[1];
+            books.compute(book.getId(), (id, stored) -> {
+                if (stored != null && stored.getVersion() != expectedVersion) {
+                    return stored;
+                }
+                book.setVersion(expectedVersion + 1);
+                saved[0] = true;
+                return copy(book);
+            });
+            return saved[0];
+        }
+
+        @Override
+        public List<Book> findAll() {
+            return books.values().stream().map(OptimisticBookVersionTest::copy).toList();
+        }
+    }
+
+    private static Book copy(Book b) {
+        Book copy = new Book(b.getId(), b.getTitle(), b.getCopiesAvailable());
+        copy.setVersion(b.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,157 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationEventBusTest {
+
+    @Test
+    void subscribersReceiveTypedEventsInOrder() throws Exception {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        ReservationEventBus bus = new ReservationEventBus(1024, ReservationEventBus.Backpressure.BLOCK);
+        service.addListener(bus);
+
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("test", (event, sequence, endOfBatch) -> seen.add(event.toString()));
+
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.reservePriority("PriorityUser2", "1");
+        service.cancel("PriorityUser2", "1");
+        service.cancel("RegularUser", "1");
+        bus.close();
+
+        assertEquals(List.of(
+                "COPIES_CHANGED 1 copies=0",
+                "RESERVED RegularUser 1",
+                "WAITLISTED PriorityUser1 1",
+                "WAITLISTED PriorityUser2 1",
+                "LEFT_WAITING_LIST PriorityUser2 1",
+                "CANCELLED RegularUser 1",
+                "PROMOTED PriorityUser1 1"), seen);
+    }
+
+    @Test
+    void dropPolicyNeverStallsPublishers() throws Exception {
+        ReservationEventBus bus = new ReservationEventBus(8, ReservationEventBus.Backpressure.DROP);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        bus.subscribe("slow", (event, sequence, endOfBatch) -> {
+            release.await();
+            handled.incrementAndGet();
+        });
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (bus.publish(ReservationEvent.Type.RESERVED, "User" + i, "1", 0)) {
+                accepted++;
+            }
+        }
+        // the subscriber is stuck, so at most one ring's worth got in
+        assertTrue(accepted <= 8);
+        assertEquals(100 - accepted, bus.getDroppedCount());
+
+        release.countDown();
+        bus.close();
+        assertEquals(accepted, handled.get());
+    }
+
+    @Test
+    void blockPolicyDeliversEverythingInBatches() throws Exception {
+        ReservationEventBus bus = new ReservationEventBus(16, ReservationEventBus.Backpressure.BLOCK);
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("all", (event, sequence, endOfBatch) -> sequences.add(sequence));
+
+        Thread[] publishers = new Thread[4];
+        for (int t = 0; t < publishers.length; t++) {
+            publishers[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    bus.publish(ReservationEvent.Type.COPIES_CHANGED, null, "1", i);
+                }
+            });
+            publishers[t].start();
+        }
+        for (Thread t : publishers) {
+            t.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(t.isAlive());
+        }
+        bus.close();
+
+        assertEquals(0, bus.getDroppedCount());
+        assertEquals(20_000, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals((long) i, sequences.get(i).longValue());
+        }
+    }
+
+    @Test
+    void backlogIsDeliveredAsOneBatch() throws Exception {
+        ReservationEventBus bus = new ReservationEventBus(16, ReservationEventBus.Backpressure.BLOCK);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> batchEnds = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("all", (event, sequence, endOfBatch) -> {
+            if (sequence == 0) {
+                entered.countDown();
+                release.await();
+            }
+            if (endOfBatch) {
+                batchEnds.add(sequence);
+            }
+        });
+
+        bus.publish(ReservationEvent.Type.COPIES_CHANGED, null, "1", 0);
+        assertTrue(entered.await(30, TimeUnit.SECONDS));
+        // everything published while the handler is busy piles up
+        for (int i = 1; i < 16; i++) {
+            bus.publish(ReservationEvent.Type.COPIES_CHANGED, null, "1", i);
+        }
+        release.countDown();
+        bus.close();
+
+        assertEquals(List.of(0L, 15L), batchEnds);
+    }
+
+    @Test
+    void handlerErrorDoesNotStallBlockingPublishers() throws Exception {
+        ReservationEventBus bus = new ReservationEventBus(4, ReservationEventBus.Backpressure.BLOCK);
+        ReservationEventBus.Subscription broken = bus.subscribe("broken", (event, sequence, endOfBatch) -> {
+            throw new AssertionError("handler bug");
+        });
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                bus.publish(ReservationEvent.Type.COPIES_CHANGED, null, "1", i);
+            }
+        });
+        publisher.start();
+        publisher.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertFalse(publisher.isAlive());
+        assertEquals(99, bus.getCursor());
+        assertTrue(broken.getFailure() instanceof AssertionError);
+        bus.close();
+    }
+
+    @Test
+    void interruptedCloseReturnsAndKeepsTheFlag() {
+        ReservationEventBus bus = new ReservationEventBus(8, ReservationEventBus.Backpressure.DROP);
+        CountDownLatch release = new CountDownLatch(1);
+        bus.subscribe("stuck", (event, sequence, endOfBatch) -> release.await());
+        bus.publish(ReservationEvent.Type.COPIES_CHANGED, null, "1", 0);
+
+        Thread.currentThread().interrupt();
+        bus.close();
+        assertTrue(Thread.interrupted());
+        release.countDown();
+    }
+}
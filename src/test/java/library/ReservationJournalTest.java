@@ -0,0 +1,155 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationJournalTest {
+
+    @Test
+    void recoveryRebuildsRepositoriesAndWaitingLists() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo)) {
+            journal.saveBook(new Book("1", "Popular Book", 1));
+            journal.saveBook(new Book("2", "The Bible", 10));
+            service.reserve("RegularUser", "1");
+            service.reservePriority("PriorityUser1", "1");
+            service.reservePriority("PriorityUser2", "1");
+            service.reserve("Nebojsa", "2");
+            service.cancel("RegularUser", "1"); // PriorityUser1 promoted
+        }
+
+        // "restart" with empty repositories
+        IBookRepository bookRepo2 = new MemoryBookRepository();
+        IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+        ReservationService service2 = new ReservationService(bookRepo2, reservationRepo2);
+        try (ReservationJournal journal = new ReservationJournal(dir, service2, bookRepo2, reservationRepo2)) {
+            assertEquals(0, bookRepo2.findById("1").getCopiesAvailable());
+            assertEquals(9, bookRepo2.findById("2").getCopiesAvailable());
+            assertFalse(reservationRepo2.existsByUserAndBook("RegularUser", "1"));
+            assertTrue(reservationRepo2.existsByUserAndBook("PriorityUser1", "1"));
+            assertTrue(reservationRepo2.existsByUserAndBook("PriorityUser2", "1"));
+            assertEquals(0, service2.waitingPosition("PriorityUser2", "1"));
+            assertEquals(-1, service2.waitingPosition("PriorityUser1", "1"));
+
+            // the recovered waiting list still works
+            service2.cancel("PriorityUser1", "1");
+            assertEquals(0, service2.waitingListLength("1"));
+            assertEquals(0, bookRepo2.findById("1").getCopiesAvailable());
+        }
+    }
+
+    @Test
+    void checkpointThenMoreChangesSurviveRestart() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo)) {
+            journal.saveBook(new Book("1", "Popular Book", 1));
+            service.reserve("RegularUser", "1");
+            service.reservePriority("PriorityUser1", "1");
+            journal.checkpoint();
+            assertEquals(1, journal.getRecordCount()); // just the header
+
+            service.reservePriority("PriorityUser2", "1");
+            service.cancel("RegularUser", "1");
+        }
+
+        IBookRepository bookRepo2 = new MemoryBookRepository();
+        IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+        ReservationService service2 = new ReservationService(bookRepo2, reservationRepo2);
+        try (ReservationJournal journal = new ReservationJournal(dir, service2, bookRepo2, reservationRepo2)) {
+            assertEquals(0, bookRepo2.findById("1").getCopiesAvailable());
+            assertEquals(2, reservationRepo2.findByBook("1").size());
+            assertEquals(List.of("PriorityUser2"), service2.waitingUsers("1"));
+        }
+    }
+
+    @Test
+    void concurrentWritersShareFsyncs() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        IReservationRepository reservationRepo = new ConcurrentReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        int threads = 8;
+        int perThread = 200;
+
+        // a slow disk: requests arriving during an fsync pile up behind it
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo, 0) {
+            @Override
+            void fsync() {
+                LockSupport.parkNanos(1_000_000);
+                super.fsync();
+            }
+        }) {
+            for (int b = 0; b < threads; b++) {
+                journal.saveBook(new Book("B" + b, "Book " + b, perThread));
+            }
+            long commitsBefore = journal.getCommitCount();
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String bookId = "B" + t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        service.reserve("User" + i, bookId);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            pool.shutdown();
+
+            long commits = journal.getCommitCount() - commitsBefore;
+            // one fsync each would be threads * perThread
+            assertTrue(commits <= threads * perThread / 3, commits + " fsyncs");
+        }
+
+        IBookRepository bookRepo2 = new MemoryBookRepository();
+        IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+        ReservationService service2 = new ReservationService(bookRepo2, reservationRepo2);
+        try (ReservationJournal journal = new ReservationJournal(dir, service2, bookRepo2, reservationRepo2)) {
+            for (int b = 0; b < threads; b++) {
+                assertEquals(0, bookRepo2.findById("B" + b).getCopiesAvailable());
+                assertEquals(perThread, reservationRepo2.findByBook("B" + b).size());
+            }
+        }
+    }
+
+    @Test
+    void batchesAreOnDiskWhenTheyReturn() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        CombiningReservationService combining = new CombiningReservationService(service);
+
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo)) {
+            journal.saveBook(new Book("1", "Popular Book", 5));
+            long commitsBefore = journal.getCommitCount();
+            service.reserveAll(List.of(new ReservationRequest("A", "1"), new ReservationRequest("B", "1")));
+            assertEquals(commitsBefore + 1, journal.getCommitCount());
+            combining.tryReserve("C", "1");
+            assertEquals(commitsBefore + 2, journal.getCommitCount());
+            service.cancelAll(List.of(new ReservationRequest("A", "1")));
+            assertEquals(commitsBefore + 3, journal.getCommitCount());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationMetricsTest {
+
+    @Test
+    void countsOperationsRejectionsAndWaitingDepth() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        ReservationMetrics metrics = new ReservationMetrics();
+        service.addListener(metrics);
+
+        bookRepo.save(new Book("1", "Popular Book", 1));
+
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.reservePriority("PriorityUser2", "1");
+        service.tryReserve("RegularUser", "1");        // duplicate
+        service.tryReserve("Alice", "1");              // no copies
+        service.tryReserve("Alice", "NON_EXISTENT");   // book missing
+        service.listReservations("RegularUser");
+
+        MetricsSnapshot before = metrics.snapshot();
+        assertEquals(4, before.getCount(ReservationOperation.RESERVE));
+        assertEquals(2, before.getCount(ReservationOperation.RESERVE_PRIORITY));
+        assertEquals(1, before.getCount(ReservationOperation.LIST));
+        assertEquals(1, before.getRejections(ReservationStatus.ALREADY_RESERVED));
+        assertEquals(1, before.getRejections(ReservationStatus.NO_COPIES_AVAILABLE));
+        assertEquals(1, before.getRejections(ReservationStatus.BOOK_NOT_FOUND));
+        assertEquals(2, before.getWaitingUsers());
+        assertEquals(Long.valueOf(2), before.getWaitingByBook().get("1"));
+
+        // holder cancels - PriorityUser1 promoted; PriorityUser2 gives up
+        service.cancel("RegularUser", "1");
+        service.cancel("PriorityUser2", "1");
+        service.tryCancel("Nobody", "1");
+
+        MetricsSnapshot after = metrics.snapshot();
+        assertEquals(3, after.getCount(ReservationOperation.CANCEL));
+        assertEquals(1, after.getRejections(ReservationStatus.NO_RESERVATION));
+        assertEquals(0, after.getWaitingUsers());
+        assertTrue(after.getLatencyMaxNanos(ReservationOperation.RESERVE) > 0);
+    }
+
+    @Test
+    void promotionIsReportedToListeners() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        List<String> promoted = new ArrayList<>();
+        service.addListener(new ReservationListener() {
+            @Override
+            public void onPromoted(String userId, String bookId) {
+                promoted.add(userId + "/" + bookId);
+            }
+        });
+
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.cancel("RegularUser", "1");
+
+        assertEquals(List.of("PriorityUser1/1"), promoted);
+    }
+
+    @Test
+    void histogramPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v * 1_000);
+        }
+        long[] counts = histogram.counts();
+
+        long p50 = LatencyHistogram.valueAtQuantile(counts, 0.50);
+        long p99 = LatencyHistogram.valueAtQuantile(counts, 0.99);
+        assertEquals(5_000_000, p50, 5_000_000 * 0.07);
+        assertEquals(9_900_000, p99, 9_900_000 * 0.07);
+        assertEquals(10_000_000, histogram.max());
+    }
+
+    @Test
+    void sinksReceiveSnapshots() {
+        ReservationMetrics metrics = new ReservationMetrics();
+        List<MetricsSnapshot> published = new ArrayList<>();
+        metrics.addSink(published::add);
+        metrics.registerGauge("books", () -> 42);
+
+        metrics.onOperation(ReservationOperation.RESERVE, 1_000);
+        metrics.publish();
+
+        assertEquals(1, published.size());
+        assertEquals(1, published.get(0).getCount(ReservationOperation.RESERVE));
+        assertEquals(Long.valueOf(42), published.get(0).getGauges().get("books"));
+    }
+}
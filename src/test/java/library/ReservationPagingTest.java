@@ -0,0 +1,90 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationPagingTest {
+
+    @Test
+    void pagesCoverEveryReservationOnceForEachRepository() {
+        List<IReservationRepository> repos = List.of(new MemoryReservationRepository(),
+                new IndexedReservationRepository(), new ConcurrentReservationRepository(),
+                new CompactReservationRepository());
+
+        for (IReservationRepository reservationRepo : repos) {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            for (int i = 0; i < 25; i++) {
+                bookRepo.save(new Book(String.valueOf(i), "Book " + i, 1));
+                service.reserve("Nebojsa", String.valueOf(i));
+            }
+
+            PageCursor<Reservation> cursor = service.pageReservations("Nebojsa", 10);
+            List<Integer> pageSizes = new ArrayList<>();
+            List<String> seen = new ArrayList<>();
+            while (cursor.hasNext()) {
+                List<Reservation> page = cursor.nextPage();
+                pageSizes.add(page.size());
+                page.forEach(r -> seen.add(r.getBookId()));
+            }
+
+            assertEquals(List.of(10, 10, 5), pageSizes);
+            assertEquals(25, seen.stream().distinct().count());
+            assertTrue(cursor.nextPage().isEmpty());
+        }
+    }
+
+    @Test
+    void changesBetweenPagesDontBreakTheCursor() {
+        List<IReservationRepository> repos = List.of(new MemoryReservationRepository(),
+                new IndexedReservationRepository(), new ConcurrentReservationRepository(),
+                new CompactReservationRepository());
+
+        for (IReservationRepository reservationRepo : repos) {
+            IBookRepository bookRepo = new MemoryBookRepository();
+            ReservationService service = new ReservationService(bookRepo, reservationRepo);
+            for (int i = 0; i < 25; i++) {
+                bookRepo.save(new Book(String.valueOf(i), "Book " + i, 1));
+                service.reserve("Nebojsa", String.valueOf(i));
+            }
+            bookRepo.save(new Book("99", "Book 99", 1));
+
+            PageCursor<Reservation> cursor = service.pageReservations("Nebojsa", 10);
+            List<String> seen = new ArrayList<>();
+            cursor.nextPage().forEach(r -> seen.add(r.getBookId()));
+            // one already seen, one still ahead and one new past the cursor
+            service.cancel("Nebojsa", seen.get(0));
+            service.cancel("Nebojsa", "9");
+            service.reserve("Nebojsa", "99");
+            while (cursor.hasNext()) {
+                cursor.nextPage().forEach(r -> seen.add(r.getBookId()));
+            }
+
+            assertEquals(25, seen.size());
+            assertEquals(25, seen.stream().distinct().count());
+            assertTrue(seen.contains("99"));
+            assertFalse(seen.contains("9"));
+        }
+    }
+
+    @Test
+    void streamsAreLazyAndMatchTheLists() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new IndexedReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        bookRepo.save(new Book("1", "The Bible", 10));
+        service.reserve("Nebojsa", "1");
+        service.reserve("Alice", "1");
+        service.reserve("Bob", "1");
+
+        assertEquals(service.listReservationsForBook("1"), service.streamReservationsForBook("1").toList());
+        assertEquals(2, service.streamReservationsForBook("1").limit(2).count());
+        assertEquals(0, service.streamReservations("Nobody").count());
+        assertEquals(1, bookRepo.streamAll().count());
+    }
+}
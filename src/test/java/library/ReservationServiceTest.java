@@ -329,6 +329,99 @@ public class ReservationServiceTest {
         assertTrue(reservationRepo.existsByUserAndBook("PriorityUser2", "1")); // FIXED: Both keep reservations
         assertEquals(0, book.getCopiesAvailable()); // Still 0 copies
     }
-}
 
+    @Test
+    void reserveAll_ReturnsOutcomePerRequestWithoutThrowing() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        Book book1 = new Book("1", "The Bible", 2);
+        Book book2 = new Book("2", "Java Programming", 0);
+        bookRepo.save(book1);
+        bookRepo.save(book2);
+
+        List<ReservationOutcome> outcomes = service.reserveAll(List.of(
+                new ReservationRequest("Nebojsa", "1"),
+                new ReservationRequest("Alice", "2"),
+                new ReservationRequest("Nebojsa", "1"),        // duplicate in same batch
+                new ReservationRequest("Bob", "2", true),      // priority - waiting list
+                new ReservationRequest("Alice", "1"),
+                new ReservationRequest("Bob", "1"),            // no copies left
+                new ReservationRequest("Alice", "NON_EXISTENT_BOOK")));
+
+        // outcomes come back in request order
+        assertEquals(ReservationStatus.RESERVED, outcomes.get(0).getStatus());
+        assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, outcomes.get(1).getStatus());
+        assertEquals(ReservationStatus.ALREADY_RESERVED, outcomes.get(2).getStatus());
+        assertEquals(ReservationStatus.WAITLISTED, outcomes.get(3).getStatus());
+        assertEquals(ReservationStatus.RESERVED, outcomes.get(4).getStatus());
+        assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, outcomes.get(5).getStatus());
+        assertEquals(ReservationStatus.BOOK_NOT_FOUND, outcomes.get(6).getStatus());
+
+        assertEquals(0, book1.getCopiesAvailable());
+        assertEquals(2, service.listReservationsForBook("1").size());
+        assertTrue(reservationRepo.existsByUserAndBook("Bob", "2"));
+        assertFalse(reservationRepo.existsByUserAndBook("Alice", "2"));
+    }
+
+    @Test
+    void cancelAll_ReleasesCopiesAndReportsMissingReservations() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        Book book = new Book("1", "The Bible", 3);
+        bookRepo.save(book);
+
+        service.reserve("Nebojsa", "1");
+        service.reserve("Alice", "1");
+        assertEquals(1, book.getCopiesAvailable());
+
+        List<ReservationOutcome> outcomes = service.cancelAll(List.of(
+                new ReservationRequest("Nebojsa", "1"),
+                new ReservationRequest("Bob", "1"),
+                new ReservationRequest("Alice", "1"),
+                new ReservationRequest("Alice", "1")));
 
+        assertEquals(ReservationStatus.CANCELLED, outcomes.get(0).getStatus());
+        assertEquals(ReservationStatus.NO_RESERVATION, outcomes.get(1).getStatus());
+        assertEquals(ReservationStatus.CANCELLED, outcomes.get(2).getStatus());
+        assertEquals(ReservationStatus.NO_RESERVATION, outcomes.get(3).getStatus());
+
+        assertEquals(3, book.getCopiesAvailable());
+        assertTrue(service.listReservationsForBook("1").isEmpty());
+    }
+
+    @Test
+    void waitingUserCancelling_LeavesQueueWithoutTakingACopy() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+
+        Book book = new Book("1", "Popular Book", 1);
+        bookRepo.save(book);
+
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.reservePriority("PriorityUser2", "1");
+        assertEquals(0, service.waitingPosition("PriorityUser1", "1"));
+        assertEquals(1, service.waitingPosition("PriorityUser2", "1"));
+
+        // first waiting user gives up - removed from queue, nobody promoted
+        service.cancel("PriorityUser1", "1");
+        assertEquals(-1, service.waitingPosition("PriorityUser1", "1"));
+        assertEquals(0, service.waitingPosition("PriorityUser2", "1"));
+        assertEquals(1, service.waitingListLength("1"));
+        assertEquals(0, book.getCopiesAvailable());
+
+        // holder returns the copy - it goes to PriorityUser2
+        service.cancel("RegularUser", "1");
+        assertEquals(0, service.waitingListLength("1"));
+        assertEquals(0, book.getCopiesAvailable());
+
+        // PriorityUser2 returns it - back on the shelf
+        service.cancel("PriorityUser2", "1");
+        assertEquals(1, book.getCopiesAvailable());
+    }
+}
@@ -0,0 +1,117 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationStatisticsTest {
+
+    @Test
+    void figuresFollowReservesCancelsAndPromotions() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new MemoryReservationRepository());
+        ReservationStatistics stats = new ReservationStatistics();
+        service.addListener(stats);
+
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        bookRepo.save(new Book("2", "The Bible", 10));
+        Book empty = new Book("3", "WW2 History", 0);
+        bookRepo.save(empty);
+        stats.trackBook(empty);
+
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.reservePriority("PriorityUser2", "1");
+        service.reserve("Nebojsa", "2");
+
+        assertEquals(Set.of("1", "3"), stats.getSoldOutBooks());
+        assertEquals(3, stats.getReservationCount("1"));
+        assertEquals(2, stats.getWaitingDepth("1"));
+        assertEquals(4, stats.getTotalReservations());
+        assertEquals(2, stats.getTotalWaiting());
+        assertEquals(List.of("1", "2"), stats.topReserved(5));
+        assertEquals(List.of("1"), stats.topReserved(1));
+
+        // holder leaves - PriorityUser1 is promoted, book stays sold out
+        service.cancel("RegularUser", "1");
+        assertEquals(2, stats.getReservationCount("1"));
+        assertEquals(1, stats.getWaitingDepth("1"));
+        assertTrue(stats.isSoldOut("1"));
+
+        // waiting user leaves, then the holder - a copy is back on the shelf
+        service.cancel("PriorityUser2", "1");
+        service.cancel("PriorityUser1", "1");
+        assertFalse(stats.isSoldOut("1"));
+        assertEquals(0, stats.getReservationCount("1"));
+        assertEquals(0, stats.getTotalWaiting());
+        assertEquals(List.of("2"), stats.topReserved(5));
+    }
+
+    @Test
+    void attachBuildsFiguresFromExistingState() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Popular Book", 1));
+        bookRepo.save(new Book("2", "The Bible", 10));
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.reserve("Nebojsa", "2");
+        service.reserve("Alice", "2");
+        service.reserve("Bob", "2");
+
+        ReservationStatistics stats = ReservationStatistics.attach(service, bookRepo, reservationRepo);
+        assertEquals(List.of("2", "1"), stats.topReserved(2));
+        assertEquals(1, stats.getWaitingDepth("1"));
+        assertTrue(stats.isSoldOut("1"));
+
+        // and keeps counting afterwards
+        service.reserveAll(List.of(new ReservationRequest("Carol", "1", true),
+                new ReservationRequest("Dave", "1", true)));
+        assertEquals(List.of("1", "2"), stats.topReserved(2));
+        assertEquals(3, stats.getWaitingDepth("1"));
+    }
+
+    @Test
+    void concurrentEventsOnManyBooksAddUp() throws Exception {
+        IBookRepository bookRepo = new ConcurrentBookRepository();
+        ReservationService service = new ReservationService(bookRepo, new ConcurrentReservationRepository());
+        ReservationStatistics stats = new ReservationStatistics();
+        service.addListener(stats);
+        int threads = 8;
+        for (int b = 0; b < threads; b++) {
+            bookRepo.save(new Book("B" + b, "Book " + b, 100));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String bookId = "B" + t;
+            int keep = t + 1;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    service.reserve("User" + i, bookId);
+                    if (i >= keep) {
+                        service.cancel("User" + i, bookId);
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        // B7 keeps 8 reservations, B6 keeps 7, ...
+        assertEquals(36, stats.getTotalReservations());
+        assertEquals(List.of("B7", "B6", "B5"), stats.topReserved(3));
+        assertEquals(1, stats.getReservationCount("B0"));
+    }
+}
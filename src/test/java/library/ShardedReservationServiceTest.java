@@ -0,0 +1,69 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedReservationServiceTest {
+
+    @Test
+    void booksSpreadOverShardsAndUserListingsAreMerged() {
+        ShardedReservationService service = ShardedReservationService.local(4,
+                MemoryBookRepository::new, IndexedReservationRepository::new);
+
+        Set<String> usedShards = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            String bookId = "book-" + i;
+            service.saveBook(new Book(bookId, "Book " + i, 1));
+            usedShards.add(service.shardFor(bookId).getShardId());
+            service.reserve("Nebojsa", bookId);
+        }
+
+        // every shard owns some books
+        assertEquals(4, usedShards.size());
+
+        // fan-out returns the user's reservations from all shards
+        List<Reservation> reservations = service.listReservations("Nebojsa");
+        assertEquals(40, reservations.size());
+
+        // single-book operations behave like the plain service
+        assertEquals(0, service.findBook("book-7").getCopiesAvailable());
+        assertEquals(ReservationStatus.NO_COPIES_AVAILABLE, service.tryReserve("Alice", "book-7").getStatus());
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.reserve("Alice", "NON_EXISTENT_BOOK"));
+        assertEquals("Book not found", exception.getMessage());
+
+        service.cancel("Nebojsa", "book-7");
+        assertEquals(1, service.findBook("book-7").getCopiesAvailable());
+        assertTrue(service.listReservationsForBook("book-7").isEmpty());
+    }
+
+    @Test
+    void ringPlacementIsStableWhenAShardIsAdded() {
+        ConsistentHashRing<String> three = new ConsistentHashRing<>(128);
+        ConsistentHashRing<String> four = new ConsistentHashRing<>(128);
+        for (String s : List.of("a", "b", "c")) {
+            three.add(s, s);
+            four.add(s, s);
+        }
+        four.add("d", "d");
+
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String key = "book-" + i;
+            String before = three.nodeFor(key);
+            String after = four.nodeFor(key);
+            if (!before.equals(after)) {
+                moved++;
+                // keys only ever move to the new shard
+                assertEquals("d", after);
+            }
+        }
+        // roughly a quarter of the keys should move
+        assertTrue(moved > 1_500 && moved < 3_500, "moved " + moved);
+    }
+}
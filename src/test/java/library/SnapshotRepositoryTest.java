@@ -0,0 +1,126 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotRepositoryTest {
+
+    // key with a tiny hash range so collisions and deep tries get exercised
+    private record Key(int id) {
+        @Override
+        public int hashCode() {
+            return id % 37 == 0 ? 42 : id * 0x9E3779B9;
+        }
+    }
+
+    @Test
+    void persistentMapMatchesHashMapAndKeepsOldVersions() {
+        Random random = new Random(7);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        PersistentHashMap<Key, Integer> halfway = null;
+        Map<Key, Integer> expectedHalfway = null;
+
+        for (int i = 0; i < 20_000; i++) {
+            Key key = new Key(random.nextInt(3_000));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+            if (i == 10_000) {
+                halfway = map;
+                expectedHalfway = new HashMap<>(expected);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int id = 0; id < 3_000; id++) {
+            assertEquals(expected.get(new Key(id)), map.get(new Key(id)));
+            assertEquals(expectedHalfway.get(new Key(id)), halfway.get(new Key(id)));
+        }
+        Map<Key, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+        assertEquals(expected.size(), map.values().count());
+    }
+
+    @Test
+    void snapshotDoesNotSeeLaterWrites() {
+        SnapshotReservationRepository repo = new SnapshotReservationRepository();
+        repo.save(new Reservation("Nebojsa", "1"));
+        repo.save(new Reservation("Nebojsa", "2"));
+
+        SnapshotReservationRepository.Snapshot before = repo.snapshot();
+        repo.delete("Nebojsa", "1");
+        repo.save(new Reservation("Alice", "1"));
+
+        assertEquals(2, before.findByUser("Nebojsa").size());
+        assertTrue(before.existsByUserAndBook("Nebojsa", "1"));
+        assertFalse(before.existsByUserAndBook("Alice", "1"));
+
+        assertEquals(1, repo.findByUser("Nebojsa").size());
+        assertEquals(List.of("Alice"), repo.findByBook("1").stream().map(Reservation::getUserId).toList());
+        assertEquals(2, repo.size());
+    }
+
+    @Test
+    void worksBehindTheService() {
+        IBookRepository bookRepo = new SnapshotBookRepository();
+        IReservationRepository reservationRepo = new SnapshotReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        bookRepo.save(new Book("1", "Popular Book", 1));
+
+        service.reserve("RegularUser", "1");
+        service.reservePriority("PriorityUser1", "1");
+        service.cancel("RegularUser", "1");
+
+        assertEquals(0, bookRepo.findById("1").getCopiesAvailable());
+        assertEquals(1, service.listReservationsForBook("1").size());
+        assertTrue(reservationRepo.existsByUserAndBook("PriorityUser1", "1"));
+    }
+
+    @Test
+    void readersNeverSeeHalfABatch() throws Exception {
+        SnapshotReservationRepository repo = new SnapshotReservationRepository();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger torn = new AtomicInteger();
+
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                while (!done.get()) {
+                    // pairs are saved and deleted together, so the count is always even
+                    if (repo.findByBook("1").size() % 2 != 0) {
+                        torn.incrementAndGet();
+                    }
+                }
+            });
+            readers[t].start();
+        }
+
+        for (int i = 0; i < 20_000; i++) {
+            repo.saveAll(List.of(new Reservation("A" + i, "1"), new Reservation("B" + i, "1")));
+            if (i >= 10) {
+                repo.deleteAll("1", List.of("A" + (i - 10), "B" + (i - 10)));
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, torn.get());
+        assertEquals(20, repo.findByBook("1").size());
+    }
+}
@@ -0,0 +1,52 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WaitingListTest {
+
+    @Test
+    void removingFromTheMiddleKeepsOrderAndPositions() {
+        WaitingList list = new WaitingList();
+        list.enqueue("A");
+        list.enqueue("B");
+        list.enqueue("C");
+        list.enqueue("D");
+
+        assertTrue(list.remove("B"));
+        assertFalse(list.remove("B"));
+
+        assertEquals(0, list.position("A"));
+        assertEquals(1, list.position("C"));
+        assertEquals(2, list.position("D"));
+        assertEquals(-1, list.position("B"));
+        assertEquals(3, list.size());
+
+        assertEquals("A", list.poll());
+        assertEquals("C", list.poll());
+        assertEquals(0, list.position("D"));
+    }
+
+    @Test
+    void matchesLinkedListUnderRandomOperations() {
+        WaitingList list = new WaitingList(2);
+        LinkedList<String> expected = new LinkedList<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50_000; i++) {
+            String user = "User" + random.nextInt(200);
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(!expected.contains(user) && expected.add(user), list.enqueue(user));
+                case 1 -> assertEquals(expected.poll(), list.poll());
+                default -> assertEquals(expected.remove(user), list.remove(user));
+            }
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected.indexOf(user), list.position(user));
+        }
+        assertEquals(expected, list.toList());
+    }
+}
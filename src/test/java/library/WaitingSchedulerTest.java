@@ -0,0 +1,184 @@
+package library;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WaitingSchedulerTest {
+
+    @Test
+    void higherTierGoesFirstAndEachTierIsFifo() {
+        WaitingScheduler scheduler = new WaitingScheduler();
+        scheduler.enqueue("General1", ReservationTier.GENERAL);
+        scheduler.enqueue("Staff1", ReservationTier.STAFF);
+        scheduler.enqueue("Staff2", ReservationTier.STAFF);
+        assertFalse(scheduler.enqueue("Staff1", ReservationTier.COURSE));
+
+        assertEquals(3, scheduler.size());
+        assertEquals(2, scheduler.size(ReservationTier.STAFF));
+        assertEquals(1, scheduler.position("Staff2"));
+        assertEquals(0, scheduler.position("General1"));
+        assertEquals(ReservationTier.GENERAL, scheduler.tierOf("General1"));
+
+        // Staff1 scores 4 x 2, Staff2 4 x 1, General1 1 x 3
+        assertEquals("Staff1", scheduler.poll());
+        assertEquals("Staff2", scheduler.poll());
+        assertEquals("General1", scheduler.poll());
+        assertNull(scheduler.poll());
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    void waitingLongEnoughBeatsAStreamOfStaff() {
+        WaitingScheduler scheduler = new WaitingScheduler();
+        scheduler.enqueue("General", ReservationTier.GENERAL);
+
+        // one staff member arrives per freed copy; their score stays at 4
+        // while General's grows by one each round
+        scheduler.enqueue("Staff1", ReservationTier.STAFF);
+        assertEquals("Staff1", scheduler.poll());
+        scheduler.enqueue("Staff2", ReservationTier.STAFF);
+        assertEquals("Staff2", scheduler.poll());
+        scheduler.enqueue("Staff3", ReservationTier.STAFF);
+        // 4 against 4 - the earlier arrival wins
+        assertEquals("General", scheduler.poll());
+        assertEquals("Staff3", scheduler.poll());
+    }
+
+    @Test
+    void removeAndRestoreKeepOrder() {
+        WaitingScheduler scheduler = new WaitingScheduler();
+        scheduler.enqueue("Course1", ReservationTier.COURSE);
+        scheduler.enqueue("Course2", ReservationTier.COURSE);
+        scheduler.enqueue("Course3", ReservationTier.COURSE);
+        assertTrue(scheduler.remove("Course2"));
+        assertFalse(scheduler.remove("Course2"));
+        assertEquals(1, scheduler.position("Course3"));
+
+        WaitingScheduler restored = new WaitingScheduler();
+        for (WaitingScheduler.Waiter waiter : scheduler.toList()) {
+            restored.restore(waiter);
+        }
+        // new arrivals are still younger than restored waiters
+        restored.enqueue("Staff", ReservationTier.STAFF);
+        assertEquals(scheduler.toList(), restored.toList().subList(1, 3));
+        assertEquals("Course1", restored.poll());
+    }
+
+    @Test
+    void serviceWaitsUsersInTheirTier() {
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        Book book = new Book("1", "Popular Book", 1);
+        bookRepo.save(book);
+
+        service.reserve("Holder", "1");
+        assertThrows(IllegalStateException.class, () -> service.reserve("Plain", "1"));
+        service.reserve("General", "1", ReservationTier.GENERAL);
+        List<ReservationOutcome> outcomes = service.reserveAll(
+                List.of(new ReservationRequest("Staff", "1", ReservationTier.STAFF)));
+        assertEquals(ReservationStatus.WAITLISTED, outcomes.get(0).getStatus());
+        assertEquals(2, service.waitingListLength("1"));
+        assertEquals(0, service.waitingPosition("General", "1"));
+        assertEquals(0, service.waitingPosition("Staff", "1"));
+
+        // Staff scores 4 x 1 against General's 1 x 2
+        service.cancel("Holder", "1");
+        assertEquals(-1, service.waitingPosition("Staff", "1"));
+        service.cancel("Staff", "1");
+        assertEquals(0, service.waitingListLength("1"));
+        assertEquals(0, book.getCopiesAvailable());
+        assertTrue(reservationRepo.existsByUserAndBook("General", "1"));
+    }
+
+    @Test
+    void tiersAndAgesSurviveRestart() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo)) {
+            journal.saveBook(new Book("1", "Popular Book", 1));
+            service.reserve("Holder", "1");
+            service.reserve("General", "1", ReservationTier.GENERAL);
+            service.reserve("Course", "1", ReservationTier.COURSE);
+            journal.checkpoint();
+            service.reserve("Staff", "1", ReservationTier.STAFF);
+        }
+
+        IBookRepository bookRepo2 = new MemoryBookRepository();
+        IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+        ReservationService service2 = new ReservationService(bookRepo2, reservationRepo2);
+        try (ReservationJournal journal = new ReservationJournal(dir, service2, bookRepo2, reservationRepo2)) {
+            assertEquals(service.waiters("1"), service2.waiters("1"));
+
+            // General 1 x 3, Course 2 x 2, Staff 4 x 1 - tie goes to Course
+            service2.cancel("Holder", "1");
+            assertEquals(List.of("Staff", "General"), service2.waitingUsers("1"));
+        }
+    }
+
+    @Test
+    void recoveryPromotesWhoTheLiveServiceWould() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        Path binary = dir.resolve("catalog.bin");
+        Path csv = dir.resolve("catalog.csv");
+
+        IBookRepository bookRepo = new MemoryBookRepository();
+        IReservationRepository reservationRepo = new MemoryReservationRepository();
+        ReservationService service = new ReservationService(bookRepo, reservationRepo);
+        try (ReservationJournal journal = new ReservationJournal(dir, service, bookRepo, reservationRepo)) {
+            journal.saveBook(new Book("1", "Popular Book", 1));
+            service.reserve("Holder", "1");
+            service.reserve("General", "1", ReservationTier.GENERAL);
+            // users who give up still take tickets, so the clock runs ahead
+            // of the newest waiter
+            for (String user : List.of("Left1", "Left2", "Left3")) {
+                service.reserve(user, "1", ReservationTier.GENERAL);
+                service.cancel(user, "1");
+            }
+            service.reserve("Staff", "1", ReservationTier.STAFF);
+            for (String user : List.of("Left4", "Left5", "Left6")) {
+                service.reserve(user, "1", ReservationTier.GENERAL);
+                service.cancel(user, "1");
+            }
+            journal.checkpoint();
+            CatalogTransfer transfer = new CatalogTransfer(service, bookRepo, reservationRepo);
+            transfer.exportBinary(binary);
+            transfer.exportCsv(csv);
+        }
+        // General 1 x 8 against Staff 4 x 4; counting from the newest
+        // ticket instead it would be 1 x 5 against 4 x 1
+        service.cancel("Holder", "1");
+        assertTrue(reservationRepo.existsByUserAndBook("Staff", "1"));
+        assertEquals(List.of("General"), service.waitingUsers("1"));
+
+        IBookRepository bookRepo2 = new MemoryBookRepository();
+        IReservationRepository reservationRepo2 = new MemoryReservationRepository();
+        ReservationService journaled = new ReservationService(bookRepo2, reservationRepo2);
+        try (ReservationJournal journal = new ReservationJournal(dir, journaled, bookRepo2, reservationRepo2)) {
+            journaled.cancel("Holder", "1");
+            assertEquals(List.of("General"), journaled.waitingUsers("1"));
+        }
+
+        for (Path file : List.of(binary, csv)) {
+            IBookRepository bookRepo3 = new MemoryBookRepository();
+            IReservationRepository reservationRepo3 = new MemoryReservationRepository();
+            ReservationService imported = new ReservationService(bookRepo3, reservationRepo3);
+            CatalogTransfer transfer = new CatalogTransfer(imported, bookRepo3, reservationRepo3);
+            if (file == binary) {
+                transfer.importBinary(file);
+            } else {
+                transfer.importCsv(file);
+            }
+            imported.cancel("Holder", "1");
+            assertEquals(List.of("General"), imported.waitingUsers("1"), file.toString());
+        }
+    }
+}